@@ -0,0 +1,157 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Compares the CSV results of a JMH run against a baseline saved on the same machine, row by row, on the time per
+ * operation and on the bytes allocated per operation (gc.alloc.rate.norm), the two numbers an optimisation is held
+ * to. A row regresses when it got worse by more than the tolerance and by more than the error margins of both runs
+ * together, so noise alone is not flagged. Run with --save to make the given results the new baseline.
+ * Usage: BaselineComparison [--save] [results.csv] [baseline.csv] [tolerance]
+ * Exits with status 1 if any row regressed, so it can gate a build
+ */
+
+public class BaselineComparison {
+    public static final String DEFAULT_RESULTS = "bench/results.csv";
+    public static final String DEFAULT_BASELINE = "bench/baseline.csv";
+    private static final double DEFAULT_TOLERANCE = 0.10;
+    private static final String ALLOCATION_SUFFIX = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean save = arguments.remove("--save");
+        Path results = Paths.get(arguments.size() > 0 ? arguments.get(0) : DEFAULT_RESULTS);
+        Path baseline = Paths.get(arguments.size() > 1 ? arguments.get(1) : DEFAULT_BASELINE);
+        double tolerance = arguments.size() > 2 ? Double.parseDouble(arguments.get(2)) : DEFAULT_TOLERANCE;
+
+        if (save) {
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Saved " + results + " as the baseline " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.out.println("There is no baseline at " + baseline + "; run with --save to store one");
+            return;
+        }
+
+        int regressions = compare(read(baseline), read(results), tolerance);
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s) beyond " + Math.round(tolerance * 100) + "%");
+        if (regressions > 0) System.exit(1);
+    }
+
+    /**
+     * Prints one line per row present in both runs, marking the regressions and the improvements
+     * @return The amount of regressions
+     */
+    static int compare(Map<String, Row> baseline, Map<String, Row> current, double tolerance) {
+        int regressions = 0;
+        for (Map.Entry<String, Row> entry : current.entrySet()) {
+            Row before = baseline.get(entry.getKey());
+            Row after = entry.getValue();
+            if (before == null) {
+                System.out.println("NEW         " + entry.getKey() + ": " + after);
+                continue;
+            }
+
+            double change = before.score == 0.0 ? 0.0 : (after.score - before.score) / before.score;
+            boolean beyondNoise = Math.abs(after.score - before.score) > before.error + after.error;
+            String verdict = "            ";
+            if (beyondNoise && change > tolerance) {
+                verdict = "REGRESSION  ";
+                regressions++;
+            }
+            else if (beyondNoise && change < -tolerance) verdict = "IMPROVEMENT ";
+
+            System.out.println(verdict + entry.getKey() + ": " + before + " -> " + after
+                    + String.format(" (%+.1f%%)", change * 100));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) System.out.println("MISSING     " + key);
+        }
+        return regressions;
+    }
+
+    /**
+     * Reads the rows of a JMH CSV file that are kept in the comparison: the primary result of every benchmark and its
+     * normalised allocation rate, keyed by benchmark and parameters
+     */
+    static Map<String, Row> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) return rows;
+
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        if (benchmark < 0 || score < 0 || unit < 0)
+            throw new IllegalArgumentException(file + " is not a JMH CSV result file");
+
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) continue;
+            List<String> fields = split(line);
+            String name = fields.get(benchmark);
+            // Of the secondary results of the profiler, only the allocation per operation is stable enough to compare
+            if (name.contains(":") && !name.endsWith(ALLOCATION_SUFFIX)) continue;
+
+            StringBuilder key = new StringBuilder(name);
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty())
+                    key.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(fields.get(i));
+            }
+            rows.put(key.toString(), new Row(parse(fields.get(score)), error < 0 ? 0.0 : parse(fields.get(error)), fields.get(unit)));
+        }
+        return rows;
+    }
+
+    /**
+     * Splits a CSV line, honouring the quotes JMH puts around every text field
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = !quoted;
+            }
+            else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else field.append(c);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static double parse(String number) {
+        // JMH writes NaN for the error of single-sample runs
+        if (number.isEmpty() || number.equals("NaN")) return 0.0;
+        return Double.parseDouble(number);
+    }
+
+    static final class Row {
+        final double score;
+        final double error;
+        final String unit;
+
+        Row(double score, double error, String unit) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f +- %.3f %s", this.score, this.error, this.unit);
+        }
+    }
+}
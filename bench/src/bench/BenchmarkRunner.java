@@ -0,0 +1,32 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Runs every benchmark of the package (or those matching the first argument) with the GC profiler, which adds the
+ * allocation rate and bytes allocated per operation to each result, and writes the results as CSV to the second
+ * argument, bench/results.csv by default, ready to be checked against the baseline with BaselineComparison
+ */
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "bench\\..*Benchmark";
+        String results = args.length > 1 ? args[1] : BaselineComparison.DEFAULT_RESULTS;
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Xmx4g")
+                .resultFormat(ResultFormatType.CSV)
+                .result(results)
+                .build();
+        new Runner(options).run();
+    }
+}
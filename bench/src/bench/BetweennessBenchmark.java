@@ -0,0 +1,31 @@
+package bench;
+
+import graph.BrandesBetweenness;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * One pass of Brandes's edge betweenness, the step Girvan-Newman repeats after every edge it removes. The exact scores
+ * are out of reach on twitter_higgs, so the pass runs from a fixed sample of sources, which still gives the exact
+ * scores on the graphs with fewer nodes than the sample
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BetweennessBenchmark {
+    private static final int SOURCES = 1024;
+    private static final long SEED = 42L;
+
+    private final BrandesBetweenness engine = new BrandesBetweenness().withSampling(SOURCES, SEED);
+
+    @Benchmark
+    public double[] brandesPass(GraphState state) {
+        return this.engine.edgeScores(state.snapshot);
+    }
+}
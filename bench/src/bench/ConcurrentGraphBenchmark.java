@@ -0,0 +1,131 @@
+package bench;
+
+import graph.ConcurrentCapGraph;
+import graph.CsrGraph;
+import graph.NeighbourView;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Throughput of ConcurrentCapGraph at 1, 4 and 16 threads: ingesting the edges of the data set into a graph that
+ * starts empty every iteration (the threads share a cursor over the edge list, which wraps around, so late operations
+ * hit edges that are already there), and a mix of 90% neighbour scans and 10% edge additions on a copy of the full
+ * graph made before every iteration
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcurrentGraphBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ingest {
+        int[] from;
+        int[] to;
+        final AtomicInteger cursor = new AtomicInteger();
+        ConcurrentCapGraph graph;
+
+        @Setup(Level.Trial)
+        public void load(GraphState state) {
+            CsrGraph snapshot = state.snapshot;
+            this.from = new int[snapshot.getEdgeAmount()];
+            this.to = new int[snapshot.getEdgeAmount()];
+            for (int node = 0; node < snapshot.getSize(); node++) {
+                for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                    this.from[e] = snapshot.idAt(node);
+                    this.to[e] = snapshot.idAt(snapshot.targetAt(e));
+                }
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.graph = new ConcurrentCapGraph();
+            this.cursor.set(0);
+        }
+    }
+
+    /**
+     * The mix adds edges, so the graph is copied again before every iteration to measure each one on the same graph
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+        ConcurrentCapGraph graph;
+        int[] ids;
+
+        @Setup(Level.Trial)
+        public void load(GraphState state) {
+            this.ids = new int[state.snapshot.getSize()];
+            for (int i = 0; i < this.ids.length; i++) this.ids[i] = state.snapshot.idAt(i);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset(GraphState state) {
+            this.graph = new ConcurrentCapGraph(state.graph);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean ingest1(Ingest ingest) {
+        return ingest(ingest);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean ingest4(Ingest ingest) {
+        return ingest(ingest);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean ingest16(Ingest ingest) {
+        return ingest(ingest);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long mixed1(Loaded loaded) {
+        return mixed(loaded);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long mixed4(Loaded loaded) {
+        return mixed(loaded);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long mixed16(Loaded loaded) {
+        return mixed(loaded);
+    }
+
+    private static boolean ingest(Ingest ingest) {
+        int edge = Math.floorMod(ingest.cursor.getAndIncrement(), ingest.from.length);
+        ingest.graph.addVertex(ingest.from[edge]);
+        boolean added = ingest.graph.addVertex(ingest.to[edge]);
+        ingest.graph.addEdge(ingest.from[edge], ingest.to[edge]);
+        return added;
+    }
+
+    private static long mixed(Loaded loaded) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = loaded.ids[random.nextInt(loaded.ids.length)];
+        if (random.nextInt(10) == 0) {
+            loaded.graph.addEdge(id, loaded.ids[random.nextInt(loaded.ids.length)]);
+            return 0;
+        }
+
+        NeighbourView neighbours = loaded.graph.getNode(id).getNeighbourView();
+        long sum = 0;
+        for (int i = 0; i < neighbours.size(); i++) sum += neighbours.get(i);
+        return sum;
+    }
+}
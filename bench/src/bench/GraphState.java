@@ -0,0 +1,43 @@
+package bench;
+
+import graph.CapGraph;
+import graph.CsrGraph;
+import org.openjdk.jmh.annotations.*;
+import util.GraphLoader;
+
+import java.util.Random;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The graph every benchmark runs on, loaded once per trial from the data set given as parameter, both as a CapGraph
+ * and as a CsrGraph snapshot. The per-node queries (egonets, second level friends) run over the same sample of nodes,
+ * drawn from a fixed seed so every run and every data set measures comparable work
+ */
+
+@State(Scope.Benchmark)
+public class GraphState {
+    static final int SAMPLE_SIZE = 256;
+    private static final long SEED = 42L;
+
+    @Param({"small_test_graph", "facebook_1000", "facebook_2000", "twitter_higgs"})
+    public String dataSet;
+
+    public CapGraph graph;
+    public CsrGraph snapshot;
+    public int[] sample;
+
+    @Setup(Level.Trial)
+    public void load() {
+        this.graph = new CapGraph();
+        GraphLoader.loadGraph(this.graph, fileName());
+        this.snapshot = this.graph.freeze();
+
+        Random random = new Random(SEED);
+        this.sample = new int[Math.min(SAMPLE_SIZE, this.snapshot.getSize())];
+        for (int i = 0; i < this.sample.length; i++) this.sample[i] = this.snapshot.idAt(random.nextInt(this.snapshot.getSize()));
+    }
+
+    String fileName() {
+        return "data/" + this.dataSet + ".txt";
+    }
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import graph.CapGraph;
+import graph.CsrGraph;
+import org.openjdk.jmh.annotations.*;
+import util.GraphLoader;
+import util.LoadReport;
+import util.MappedGraphLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Loading a data set from its text file: the original Scanner based loader against the memory-mapped one, into a
+ * CapGraph and straight into a CsrGraph
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Benchmark
+    public CapGraph graphLoader(GraphState state) {
+        CapGraph graph = new CapGraph();
+        GraphLoader.loadGraph(graph, state.fileName());
+        return graph;
+    }
+
+    @Benchmark
+    public LoadReport mappedGraphLoader(GraphState state) {
+        return MappedGraphLoader.loadGraph(new CapGraph(), state.fileName());
+    }
+
+    @Benchmark
+    public CsrGraph mappedCsrLoader(GraphState state) {
+        return MappedGraphLoader.loadCsr(state.fileName());
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import graph.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The read-only queries of the graph: egonets and second level friends over the sample of GraphState (each
+ * invocation covers the whole sample), the node with the highest two hop reach, the SCCs and the transposed graph.
+ * Each one runs on the CapGraph and, where it has its own version, on the CsrGraph snapshot too
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Benchmark
+    public void egonetCapGraph(GraphState state, Blackhole blackhole) {
+        for (int center : state.sample) blackhole.consume(state.graph.getEgonet(center));
+    }
+
+    @Benchmark
+    public void egonetCsrGraph(GraphState state, Blackhole blackhole) {
+        for (int center : state.sample) blackhole.consume(state.snapshot.getEgonet(center));
+    }
+
+    @Benchmark
+    public Egonet[] egonetBatch(GraphState state) {
+        return new EgonetExtractor(state.snapshot).extract(state.sample);
+    }
+
+    @Benchmark
+    public void secondLevelFriendsCapGraph(GraphState state, Blackhole blackhole) {
+        for (int id : state.sample) blackhole.consume(state.graph.get2ndLevelFriends(id));
+    }
+
+    @Benchmark
+    public void secondLevelFriendsCsrGraph(GraphState state, Blackhole blackhole) {
+        for (int id : state.sample) blackhole.consume(state.snapshot.get2ndLevelFriends(id));
+    }
+
+    @Benchmark
+    public Map<Integer, Set<Integer>> highestTwoHop(GraphState state) {
+        return state.graph.getHighestTwoHop();
+    }
+
+    @Benchmark
+    public List<Graph> sccsCapGraph(GraphState state) {
+        return state.graph.getSCCs();
+    }
+
+    @Benchmark
+    public int sccsCsrGraph(GraphState state) {
+        return new SCC(state.snapshot).getComponentAmount();
+    }
+
+    @Benchmark
+    public Graph transposeCapGraph(GraphState state) {
+        return state.graph.transposeGraph();
+    }
+
+    @Benchmark
+    public Graph transposeCsrGraph(GraphState state) {
+        return state.snapshot.transposeGraph();
+    }
+}
@@ -0,0 +1,90 @@
+package graph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Accuracy report of the sampled betweenness against the exact scores, on the data sets small enough to get the exact
+ * scores in a reasonable time. For each sample size it prints the largest error of any edge relative to n * (n - 1)
+ * (the quantity bounded by BrandesBetweenness.withErrorBound), the mean relative error among the top 1% edges (the
+ * ones Girvan-Newman actually deletes), the rank the estimate gives to the exact highest scoring edge (on symmetric
+ * data its reverse edge has almost the same score, so 2 is as good as 1) and the time taken
+ */
+
+public class BetweennessAccuracy {
+    private static final String[] DATA_SETS = {"data/small_test_graph.txt", "data/facebook_1000.txt", "data/facebook_2000.txt"};
+    private static final double[] SAMPLE_FRACTIONS = {0.05, 0.1, 0.25, 0.5};
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) {
+        String[] dataSets = args.length > 0 ? args : DATA_SETS;
+        BrandesBetweenness exactEngine = BrandesBetweenness.parallel();
+
+        for (String dataSet : dataSets) {
+            CapGraph graph = new CapGraph();
+            util.GraphLoader.loadGraph(graph, dataSet);
+            CsrGraph snapshot = graph.freeze();
+            int n = snapshot.getSize();
+
+            long start = System.nanoTime();
+            double[] exact = exactEngine.edgeScores(snapshot);
+            long exactTime = System.nanoTime() - start;
+            int exactTop = highest(exact);
+
+            System.out.println("\n" + dataSet + ": " + n + " nodes, " + snapshot.getEdgeAmount() + " edges, exact scores in "
+                    + String.format("%.3f", exactTime / 1e9) + " seconds");
+            System.out.println("  sources   max error/n(n-1)   top 1% mean rel. error   rank of top edge   seconds");
+
+            for (double fraction : SAMPLE_FRACTIONS) {
+                int sampleSize = Math.max(1, (int) (n * fraction));
+                start = System.nanoTime();
+                double[] estimate = exactEngine.withSampling(sampleSize, SEED).edgeScores(snapshot);
+                long time = System.nanoTime() - start;
+
+                System.out.println(String.format("  %7d   %16.6f   %22.4f   %16d   %7.3f", sampleSize,
+                        maxError(exact, estimate) / ((double) n * (n - 1)), topMeanRelativeError(exact, estimate),
+                        rank(estimate, exactTop), time / 1e9));
+            }
+        }
+    }
+
+    private static int highest(double[] scores) {
+        int best = -1;
+        for (int e = 0; e < scores.length; e++) {
+            if (best < 0 || scores[e] > scores[best]) best = e;
+        }
+        return best;
+    }
+
+    /**
+     * @return 1 plus the amount of edges with a strictly higher score than the given one
+     */
+    private static int rank(double[] scores, int edge) {
+        int rank = 1;
+        for (double score : scores) {
+            if (score > scores[edge]) rank++;
+        }
+        return rank;
+    }
+
+    private static double maxError(double[] exact, double[] estimate) {
+        double max = 0.0;
+        for (int e = 0; e < exact.length; e++) max = Math.max(max, Math.abs(exact[e] - estimate[e]));
+        return max;
+    }
+
+    private static double topMeanRelativeError(double[] exact, double[] estimate) {
+        double[] sorted = exact.clone();
+        java.util.Arrays.sort(sorted);
+        int top = Math.max(1, exact.length / 100);
+        double threshold = sorted[sorted.length - top];
+
+        double sum = 0.0;
+        int amount = 0;
+        for (int e = 0; e < exact.length; e++) {
+            if (exact[e] >= threshold && exact[e] > 0.0) {
+                sum += Math.abs(exact[e] - estimate[e]) / exact[e];
+                amount++;
+            }
+        }
+        return amount == 0 ? 0.0 : sum / amount;
+    }
+}
@@ -0,0 +1,95 @@
+package graph;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Worker process of DistributedBetweenness: connects to the coordinator, then keeps the last snapshot it was sent
+ * (saved to a temporary file and mapped) and answers every range of sources with the dependencies they add to each
+ * edge, until the coordinator asks it to stop or goes away. It can also be started by hand on another machine,
+ * pointed at a coordinator that listens on a reachable address
+ */
+
+public class BetweennessWorker {
+
+    /**
+     * Arguments: host and port of the coordinator, number of this worker, and optionally the amount of ranges after
+     * which the worker exits without answering, to exercise the coordinator's recovery
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: BetweennessWorker <host> <port> <number> [maxRanges]");
+            System.exit(2);
+        }
+        int maxRanges = args.length > 3 ? Integer.parseInt(args[3]) : -1;
+
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(DistributedBetweenness.MAGIC);
+            out.writeInt(Integer.parseInt(args[2]));
+            out.flush();
+            serve(in, out, maxRanges);
+        } catch (EOFException e) {
+            // The coordinator went away without asking this worker to stop
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void serve(DataInputStream in, DataOutputStream out, int maxRanges) throws IOException {
+        BrandesBetweenness engine = new BrandesBetweenness();
+        CsrGraph graph = null;
+        Path snapshot = null;
+        int served = 0;
+
+        try {
+            while (true) {
+                int operation = in.readInt();
+                if (operation == DistributedBetweenness.SHUTDOWN) return;
+
+                if (operation == DistributedBetweenness.GRAPH) {
+                    if (snapshot != null) Files.deleteIfExists(snapshot);
+                    snapshot = Files.createTempFile("betweenness-worker", ".csr");
+                    receiveFile(in, in.readLong(), snapshot);
+                    graph = MappedCsrGraph.open(snapshot.toString());
+                    if (graph == null) throw new IOException("The snapshot sent by the coordinator couldn't be read");
+                } else if (operation == DistributedBetweenness.RANGE) {
+                    int fromSource = in.readInt();
+                    int toSource = in.readInt();
+                    if (graph == null) throw new IOException("A range was sent before any snapshot");
+                    if (served == maxRanges) Runtime.getRuntime().halt(3);
+
+                    double[] scores = new double[graph.getEdgeAmount()];
+                    engine.accumulate(graph, fromSource, toSource, scores);
+                    out.writeInt(DistributedBetweenness.SCORES);
+                    out.writeInt(scores.length);
+                    DistributedBetweenness.writeDoubles(out, scores);
+                    out.flush();
+                    served++;
+                } else {
+                    throw new IOException("Unknown operation " + operation);
+                }
+            }
+        }
+        finally {
+            if (snapshot != null) Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private static void receiveFile(DataInputStream in, long length, Path file) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            for (long left = length; left > 0; ) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (read < 0) throw new EOFException("The snapshot was cut short");
+                out.write(buffer, 0, read);
+                left -= read;
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package graph;
+
+import graph.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Brandes's algorithm for edge betweenness centrality over a CSR snapshot, with the same stages as the original
+ * implementation in GraphCommunities (see Brandes, 2001, and Green, McColl and Bader, 2012), but with every per-source
+ * collection replaced by primitive arrays indexed by dense index, allocated once per worker and reused for every source.
+ * The BFS from each source is independent of the others, so sources are split in fixed-size chunks that can be
+ * processed by several threads. Each thread takes every p-th chunk into its own running partial array, and the
+ * partials are added up at the end in thread order, so the scores are the same, bit by bit, on every run with the same
+ * amount of threads (with a different amount they can differ in the last bits, since the additions are grouped
+ * differently).
+ * The exact scores cost O(n*m), which is what makes Girvan-Newman intractable past a few thousand nodes. An engine
+ * created with withSampling or withErrorBound instead runs the BFS from a uniform sample of k sources (pivots, as in
+ * Brandes and Pich, 2007) and scales the result by n/k, which is an unbiased estimate of every edge's score. The sample
+ * is drawn from a seeded generator, so the estimate is as deterministic as the exact scores
+ */
+
+public class BrandesBetweenness {
+    static final int SOURCES_PER_CHUNK = 32;
+
+    private final int parallelism;
+    private final ExecutorService executor;
+    // Zero for the exact scores; otherwise the amount of pivots, unless an error bound is given
+    private final int sampleSize;
+    private final double epsilon;
+    private final double delta;
+    private final long seed;
+    // Bytes allocated by the tasks this engine ran on other threads, counted only while a GraphMetrics is installed
+    private final LongAdder workerAllocation = new LongAdder();
+
+    /**
+     * Sequential engine
+     */
+    public BrandesBetweenness() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism Amount of threads to use; a pool of that size is created for each call and shut down after it
+     */
+    public BrandesBetweenness(int parallelism) {
+        this(null, parallelism, 0, 0.0, 0.0, 0L);
+    }
+
+    /**
+     * @param executor Executor owned by the caller (it is never shut down here)
+     * @param parallelism Amount of tasks to split the sources in, which the executor runs at the same time if it can
+     */
+    public BrandesBetweenness(ExecutorService executor, int parallelism) {
+        this(executor, parallelism, 0, 0.0, 0.0, 0L);
+        if (executor == null) throw new NullPointerException("The executor passed to the betweenness engine points to a null value");
+    }
+
+    private BrandesBetweenness(ExecutorService executor, int parallelism, int sampleSize, double epsilon, double delta, long seed) {
+        Parallel.checkParallelism(parallelism);
+        this.parallelism = parallelism;
+        this.executor = executor;
+        this.sampleSize = sampleSize;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.seed = seed;
+    }
+
+    /**
+     * @param sampleSize Amount of sources to run the BFS from; graphs with at most that many nodes get their exact scores
+     * @param seed Seed of the generator that picks the sources
+     * @return An engine with the same threads as this one that estimates the scores from a sample of sources
+     */
+    public BrandesBetweenness withSampling(int sampleSize, long seed) {
+        if (sampleSize < 1) throw new IllegalArgumentException("The sample size must be at least one, got " + sampleSize);
+        return new BrandesBetweenness(this.executor, this.parallelism, sampleSize, 0.0, 0.0, seed);
+    }
+
+    /**
+     * The sample size is chosen for each graph so that, with probability at least 1 - delta, every edge's estimate is
+     * within epsilon * n * (n - 1) of its exact score (see samplesForErrorBound)
+     * @param epsilon Maximum error, relative to the amount of ordered pairs of nodes; between 0 and 1
+     * @param delta Maximum probability of any edge exceeding that error; between 0 and 1
+     * @param seed Seed of the generator that picks the sources
+     * @return An engine with the same threads as this one that estimates the scores from a sample of sources
+     */
+    public BrandesBetweenness withErrorBound(double epsilon, double delta, long seed) {
+        if (!(epsilon > 0.0 && epsilon < 1.0) || !(delta > 0.0 && delta < 1.0))
+            throw new IllegalArgumentException("Both epsilon and delta must be between 0 and 1, got " + epsilon + " and " + delta);
+        return new BrandesBetweenness(this.executor, this.parallelism, 0, epsilon, delta, seed);
+    }
+
+    /**
+     * The dependency of a single source on an edge is between 0 and n - 1, so by Hoeffding's inequality (which also
+     * holds when sampling without replacement) the average over k sources deviates more than epsilon * (n - 1) from its
+     * expected value with probability at most 2 * e^(-2 * k * epsilon^2); the union bound over the m edges gives the
+     * amount of sources needed
+     * @return The smallest k for which every edge is within the bound with probability at least 1 - delta
+     */
+    public static int samplesForErrorBound(int edges, double epsilon, double delta) {
+        double samples = Math.log(2.0 * Math.max(1, edges) / delta) / (2.0 * epsilon * epsilon);
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(samples));
+    }
+
+    /**
+     * @return An engine using one thread per available core
+     */
+    public static BrandesBetweenness parallel() {
+        return new BrandesBetweenness(Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @return The bytes allocated so far by the tasks this engine handed to other threads of this JVM while a
+     * GraphMetrics was installed (the calling thread's own allocation is not included)
+     */
+    long getWorkerAllocatedBytes() {
+        return this.workerAllocation.sum();
+    }
+
+    /**
+     * @return The task, measuring what it allocates on the thread that runs it if a GraphMetrics is installed
+     */
+    Runnable measured(Runnable task) {
+        if (Metrics.current() == null) return task;
+        return () -> {
+            long before = Metrics.allocatedBytes();
+            try {
+                task.run();
+            }
+            finally {
+                if (before >= 0) this.workerAllocation.add(Metrics.allocatedBytes() - before);
+            }
+        };
+    }
+
+    /**
+     * @return The amount of sources the BFS is run from on the given graph; equal to its size when the scores are exact
+     */
+    public int getSampleSize(CsrGraph graph) {
+        int n = graph.getSize();
+        if (this.epsilon > 0.0) return Math.min(n, samplesForErrorBound(graph.getEdgeAmount(), this.epsilon, this.delta));
+        if (this.sampleSize > 0) return Math.min(n, this.sampleSize);
+        return n;
+    }
+
+    /**
+     * @param graph on which the edge betweenness centrality is to be calculated
+     * @return The score of every edge, indexed by the edge numbers of the snapshot (see CsrGraph.edgeStart); an
+     * estimate if this engine samples sources and the graph has more nodes than the sample size
+     */
+    public double[] edgeScores(CsrGraph graph) {
+        if (graph == null) throw new NullPointerException("The argument passed to this function points to a null value");
+
+        double[] scores = new double[graph.getEdgeAmount()];
+        int[] sources = pickSources(graph);
+        int amount = sources == null ? graph.getSize() : sources.length;
+        int chunks = (amount + SOURCES_PER_CHUNK - 1) / SOURCES_PER_CHUNK;
+
+        int workers = Math.min(this.parallelism, chunks);
+        if (workers <= 1) {
+            Workspace workspace = new Workspace(graph);
+            for (int chunk = 0; chunk < chunks; chunk++) workspace.accumulateChunk(sources, amount, chunk);
+            workspace.addPartialTo(scores);
+            return scale(scores, graph.getSize(), amount);
+        }
+
+        ExecutorService pool = this.executor != null ? this.executor : Parallel.daemonPool("brandes-worker", workers);
+        try {
+            // Worker i takes chunks i, i + workers, i + 2 * workers... into its own running partial, with no barrier
+            // in between; the interleaving spreads the cheap and the expensive regions of the graph evenly
+            Workspace[] workspaces = new Workspace[workers];
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                int worker = i;
+                futures.add(pool.submit(measured(() -> {
+                    Workspace workspace = new Workspace(graph);
+                    for (int chunk = worker; chunk < chunks; chunk += workers) workspace.accumulateChunk(sources, amount, chunk);
+                    workspaces[worker] = workspace;
+                })));
+            }
+            Parallel.await(futures, "computing the betweenness scores");
+
+            // Each worker sums the partials of a range of edges, always in worker order
+            int rangeSize = (scores.length + workers - 1) / workers;
+            futures.clear();
+            for (int i = 0; i < workers; i++) {
+                int from = i * rangeSize;
+                int to = Math.min(scores.length, from + rangeSize);
+                futures.add(pool.submit(measured(() -> {
+                    for (Workspace workspace : workspaces) workspace.addPartialTo(scores, from, to);
+                })));
+            }
+            Parallel.await(futures, "computing the betweenness scores");
+        }
+        finally {
+            if (this.executor == null) pool.shutdownNow();
+        }
+
+        return scale(scores, graph.getSize(), amount);
+    }
+
+    /**
+     * Adds the dependencies of the sources with dense index from fromSource (inclusive) to toSource (exclusive),
+     * one chunk at a time, in the current thread
+     * @param scores Array indexed by edge number where the dependencies are added
+     */
+    public void accumulate(CsrGraph graph, int fromSource, int toSource, double[] scores) {
+        Workspace workspace = new Workspace(graph);
+        for (int chunkStart = fromSource; chunkStart < toSource; chunkStart += SOURCES_PER_CHUNK) {
+            workspace.clearPartial();
+            workspace.accumulateSources(null, chunkStart, Math.min(toSource, chunkStart + SOURCES_PER_CHUNK));
+            workspace.addPartialTo(scores);
+        }
+    }
+
+    /**
+     * @return The dense indices of the sampled sources in ascending order (better locality than in the order they
+     * were drawn), or null if every node is a source
+     */
+    private int[] pickSources(CsrGraph graph) {
+        int n = graph.getSize();
+        int k = getSampleSize(graph);
+        if (k >= n) return null;
+
+        // Partial Fisher-Yates shuffle: the first k positions end up holding a uniform sample without replacement
+        int[] candidates = new int[n];
+        for (int i = 0; i < n; i++) candidates[i] = i;
+        Random random = new Random(this.seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = candidates[i];
+            candidates[i] = candidates[j];
+            candidates[j] = swap;
+        }
+
+        int[] sources = Arrays.copyOf(candidates, k);
+        Arrays.sort(sources);
+        return sources;
+    }
+
+    private static double[] scale(double[] scores, int n, int sources) {
+        if (sources == n) return scores;
+        double factor = (double) n / sources;
+        for (int e = 0; e < scores.length; e++) scores[e] *= factor;
+        return scores;
+    }
+
+    /**
+     * Scratch arrays of one worker. Only the entries of the nodes reached from a source are reset after it, so
+     * sources that reach a small part of the graph cost proportionally little
+     */
+    static final class Workspace {
+        private final CsrGraph graph;
+        private final int[] distance;
+        private final double[] amountOfShortestPaths;
+        private final double[] dependency;
+        // Nodes in the order they are discovered by the BFS: it is the queue in stage 2, and read backwards it is
+        // the stack of stage 3
+        private final int[] order;
+        private final double[] partial;
+
+        Workspace(CsrGraph graph) {
+            int n = graph.getSize();
+            this.graph = graph;
+            this.distance = new int[n];
+            this.amountOfShortestPaths = new double[n];
+            this.dependency = new double[n];
+            this.order = new int[n];
+            this.partial = new double[graph.getEdgeAmount()];
+            Arrays.fill(this.distance, -1);
+        }
+
+        /**
+         * @param sources Dense indices of the sources, or null if every node is one
+         * @param amount Amount of sources
+         */
+        void accumulateChunk(int[] sources, int amount, int chunk) {
+            int start = chunk * SOURCES_PER_CHUNK;
+            accumulateSources(sources, start, Math.min(amount, start + SOURCES_PER_CHUNK));
+        }
+
+        /**
+         * Adds the dependencies of the sources in positions from (inclusive) to to (exclusive) to the partial array
+         */
+        void accumulateSources(int[] sources, int from, int to) {
+            for (int i = from; i < to; i++) accumulateSource(sources == null ? i : sources[i]);
+        }
+
+        /**
+         * Stages 1 to 3 for a single source, adding its dependencies to the partial array
+         */
+        void accumulateSource(int source) {
+            CsrGraph g = this.graph;
+
+            // Stage 1: by definition the distance from a node to itself is zero, with one shortest path
+            this.distance[source] = 0;
+            this.amountOfShortestPaths[source] = 1.0;
+            this.order[0] = source;
+            int head = 0;
+            int tail = 1;
+
+            // Stage 2: BFS counting the shortest paths to every reachable node
+            while (head < tail) {
+                int prevNode = this.order[head++];
+                int nextDistance = this.distance[prevNode] + 1;
+                for (int e = g.edgeStart(prevNode), end = g.edgeEnd(prevNode); e < end; e++) {
+                    int neighbour = g.targetAt(e);
+                    if (this.distance[neighbour] < 0) {
+                        this.distance[neighbour] = nextDistance;
+                        this.order[tail++] = neighbour;
+                    }
+                    if (this.distance[neighbour] == nextDistance) {
+                        this.amountOfShortestPaths[neighbour] += this.amountOfShortestPaths[prevNode];
+                    }
+                }
+            }
+
+            // Stage 3: back-propagation of dependencies, deepest nodes first; the dependency of every node one level
+            // below is already final when a node is processed
+            for (int i = tail - 1; i >= 0; i--) {
+                int node = this.order[i];
+                int nextDistance = this.distance[node] + 1;
+                double sum = 0.0;
+                for (int e = g.edgeStart(node), end = g.edgeEnd(node); e < end; e++) {
+                    int neighbour = g.targetAt(e);
+                    if (this.distance[neighbour] == nextDistance) {
+                        double edgeDependency = this.amountOfShortestPaths[node] / this.amountOfShortestPaths[neighbour]
+                                * (1.0 + this.dependency[neighbour]);
+                        this.partial[e] += edgeDependency;
+                        sum += edgeDependency;
+                    }
+                }
+                this.dependency[node] = sum;
+            }
+
+            for (int i = 0; i < tail; i++) {
+                int node = this.order[i];
+                this.distance[node] = -1;
+                this.amountOfShortestPaths[node] = 0.0;
+                this.dependency[node] = 0.0;
+            }
+        }
+
+        void clearPartial() {
+            Arrays.fill(this.partial, 0.0);
+        }
+
+        void addPartialTo(double[] scores) {
+            addPartialTo(scores, 0, scores.length);
+        }
+
+        void addPartialTo(double[] scores, int from, int to) {
+            for (int e = from; e < to; e++) scores[e] += this.partial[e];
+        }
+    }
+}
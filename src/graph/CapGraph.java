@@ -1,22 +1,27 @@
 package graph;
 
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author Roy Gabriel Crivolotti
+ * Nodes are numbered densely as they are added (see IdDictionary) and kept in an array by that number, so looking a
+ * node up is a probe in a table of ints and an array access, with no boxing
  */
 
 public class CapGraph implements Graph, Cloneable {
-    private Map<Integer, CapNode> map;
-    private Set<Integer> nodeSet;
-    private Set<Edge> edgeSet;
-    private int size;
+    private IdDictionary dictionary;
+    private CapNode[] nodes;
+    private EdgeIndex edges;
+    // Null until a listener is added, so graphs nobody listens to only pay for the null check
+    private List<GraphChangeListener> listeners;
 
     public CapGraph() {
-        this.map = new HashMap<>();
-        this.nodeSet = new HashSet<>();
-        this.edgeSet = new HashSet<>();
+        this.dictionary = new IdDictionary();
+        this.nodes = new CapNode[16];
+        this.edges = new EdgeIndex();
     }
 
     /**
@@ -26,13 +31,14 @@ public class CapGraph implements Graph, Cloneable {
      */
     public CapGraph(Graph graph) {
         this();
-        if (graph.getNodes().isEmpty() || ((CapGraph)graph).getEdges().isEmpty())
+        if (graph.getNodes().isEmpty() || graph.getEdgeAmount() == 0)
             throw new NullPointerException("Properly load data to the Graph object before cloning it");
 
         Set<Integer> nodes = graph.getNodes();
 //         Every member variable is updated in the two main method addVertex and addEdge
-        graph.getNodes().forEach(this::addVertex);
-        ((CapGraph)graph).getEdges().forEach(edge -> this.addEdge(edge.getFrom(), edge.getTo()));
+        nodes.forEach(this::addVertex);
+        if (graph instanceof CapGraph) ((CapGraph)graph).getEdges().forEach(edge -> this.addEdge(edge.getFrom(), edge.getTo()));
+        else nodes.forEach(id -> graph.getNode(id).getNeighbours().forEach(neighbour -> this.addEdge(id, neighbour)));
     }
 
     /**
@@ -42,10 +48,12 @@ public class CapGraph implements Graph, Cloneable {
      */
 	@Override
 	public boolean addVertex(int id) {
-	    if (this.nodeSet.contains(id)) return false;
-        this.map.put(id, new CapNode(id));
-        this.size++;
-        return this.nodeSet.add(id);
+	    if (this.dictionary.contains(id)) return false;
+        int index = this.dictionary.add(id);
+        if (index == this.nodes.length) this.nodes = Arrays.copyOf(this.nodes, 2 * index);
+        this.nodes[index] = new CapNode(id);
+        if (this.listeners != null) this.listeners.forEach(listener -> listener.vertexAdded(id));
+        return true;
 	}
 
     /**
@@ -55,14 +63,31 @@ public class CapGraph implements Graph, Cloneable {
      */
 	@Override
 	public void addEdge (int from, int to) {
-	    Edge newEdge = new Edge(from, to);
-	    this.map.get(from).addNeighbour(newEdge);
-	    this.edgeSet.add(newEdge);
+	    addEdge(new Edge(from, to));
 	}
 
 	public void addEdge (Edge newEdge) {
-	    this.map.get(newEdge.getFrom()).addNeighbour(newEdge);
-	    this.edgeSet.add(newEdge);
+	    if (!getNode(newEdge.getFrom()).addNeighbour(newEdge)) return;
+	    this.edges.add(newEdge);
+        if (this.listeners != null) this.listeners.forEach(listener -> listener.edgeAdded(newEdge.getFrom(), newEdge.getTo()));
+    }
+
+    /**
+     * The listener is told about every change made to this graph from now on; copies of this graph don't keep it
+     */
+    public void addChangeListener(GraphChangeListener listener) {
+        if (listener == null) throw new NullPointerException("The listener passed to this function points to a null value");
+        if (this.listeners == null) this.listeners = new ArrayList<>();
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @return true if the listener had been added to this graph
+     */
+    public boolean removeChangeListener(GraphChangeListener listener) {
+        if (this.listeners == null || !this.listeners.remove(listener)) return false;
+        if (this.listeners.isEmpty()) this.listeners = null;
+        return true;
     }
 
     /**
@@ -70,7 +95,24 @@ public class CapGraph implements Graph, Cloneable {
      * @return The actual node with the ID matching the parameter
      */
     public CapNode getNode(int id) {
-	    return this.map.get(id);
+        int index = this.dictionary.indexOf(id);
+	    return index < 0 ? null : this.nodes[index];
+    }
+
+    /**
+     * @return The dense index of the node, from 0 to getSize() - 1 in the order the nodes were added, or -1 if
+     * there is no such node
+     */
+    public int indexOf(int id) {
+        return this.dictionary.indexOf(id);
+    }
+
+    /**
+     * @return The ID of the node with the given dense index
+     * @throws IndexOutOfBoundsException If there is no such index
+     */
+    public int idAt(int index) {
+        return this.dictionary.idAt(index);
     }
 
     /**
@@ -79,16 +121,26 @@ public class CapGraph implements Graph, Cloneable {
      * @return A copy of the set containing node's IDs
      */
     public Set<Integer> getNodes() {
-        return new HashSet<>(this.nodeSet);
+        Set<Integer> ids = new HashSet<>();
+        for (int index = 0; index < this.dictionary.size(); index++) ids.add(this.dictionary.idAt(index));
+        return ids;
     }
 
     /**
      * This method is package private so that since edges might get unintentionally deleted by changing references/pointers
      * to objects changed, which is not how this class was meant to be used
-     * @return The actual member variable/HashSet containing the edges in the graph
+     * @return The actual member variable/index containing the edges in the graph
      */
-    Set<Edge> getEdges() {
-        return this.edgeSet;
+    EdgeIndex getEdges() {
+        return this.edges;
+    }
+
+    /**
+     * @return The edge object going from one node to the other that is stored in this graph, or null if there is no
+     * such edge; a single lookup in the edge index
+     */
+    Edge findEdge(int from, int to) {
+        return this.edges.get(this.edges.idOf(from, to));
     }
 
     /**
@@ -99,20 +151,27 @@ public class CapGraph implements Graph, Cloneable {
      */
 	@Override
 	public Graph getEgonet(int center) {
+        GraphMetrics metrics = Metrics.current();
+        long start = metrics == null ? 0L : System.nanoTime();
 	    CapGraph egonet = new CapGraph();
 	    egonet.addVertex(center);
 
-        Set<Integer> centerNeighbours = this.map.get(center).getNeighbours();
+        NeighbourView centerNeighbours = getNode(center).getNeighbourView();
 
-        for (Integer node : centerNeighbours) {
+        for (int i = 0; i < centerNeighbours.size(); i++) {
+            int node = centerNeighbours.get(i);
             egonet.addVertex(node);
             egonet.addEdge(center, node);
 
-            Set<Integer> nodeNeighbour = this.map.get(node).getNeighbours();
+            NeighbourView nodeNeighbours = getNode(node).getNeighbourView();
 
-            nodeNeighbour.stream().filter(centerNeighbours::contains).forEach(currNode -> egonet.addEdge(node, currNode));
+            for (int j = 0; j < nodeNeighbours.size(); j++) {
+                int currNode = nodeNeighbours.get(j);
+                if (centerNeighbours.contains(currNode)) egonet.addEdge(node, currNode);
+            }
 	    }
 
+        if (metrics != null) metrics.egonetExtracted(center, egonet.getSize(), System.nanoTime() - start);
 		return egonet;
     }
 
@@ -131,20 +190,71 @@ public class CapGraph implements Graph, Cloneable {
      * unintentionally modified
      * @return The transposed version of this graph
      */
+    @Override
     public Graph transposeGraph() {
         Graph transposedGraph = new CapGraph();
 
-        for (Integer id : this.map.keySet()) {
-            transposedGraph.addVertex(id);
+        for (int index = 0; index < this.dictionary.size(); index++) {
+            transposedGraph.addVertex(this.dictionary.idAt(index));
         }
 
-        for (Edge edge : this.edgeSet) {
+        for (Edge edge : this.edges) {
             transposedGraph.addEdge(edge.getTo(), edge.getFrom());
         }
 
         return transposedGraph;
     }
 
+    /**
+     * Takes an immutable CSR snapshot of the graph as it is now; read-only algorithms run on it with much less memory
+     * and far better locality than on the node objects. Later changes to this graph are not reflected in the snapshot
+     * @return The snapshot, which still implements the Graph interface
+     */
+    public CsrGraph freeze() {
+        int n = getSize();
+
+        // A snapshot keeps its nodes in order of ID; sorting (ID, index) pairs gives the rank of every dense index
+        long[] byId = new long[n];
+        for (int index = 0; index < n; index++) byId[index] = ((long) this.dictionary.idAt(index) << 32) | index;
+        Arrays.sort(byId);
+        int[] ids = new int[n];
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++) {
+            ids[r] = (int) (byId[r] >> 32);
+            rank[(int) byId[r]] = r;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int index = 0; index < n; index++) offsets[rank[index] + 1] = this.nodes[index].getNeighbourView().size();
+        for (int r = 0; r < n; r++) offsets[r + 1] += offsets[r];
+
+        // Nodes are read in the order they were added, which is the order they were allocated in, and their
+        // neighbours translated with the dictionary
+        int[] targets = new int[offsets[n]];
+        int[] ends = new int[n];
+        for (int index = 0; index < n; index++) {
+            int r = rank[index];
+            int edge = offsets[r];
+            NeighbourView neighbours = this.nodes[index].getNeighbourView();
+            for (int j = 0; j < neighbours.size(); j++) {
+                int neighbour = this.dictionary.indexOf(neighbours.get(j));
+                if (neighbour >= 0) targets[edge++] = rank[neighbour];
+            }
+            Arrays.sort(targets, offsets[r], edge);
+            ends[r] = edge;
+        }
+
+        // Neighbours that aren't nodes of this graph leave gaps, which are closed here
+        int edge = 0;
+        for (int r = 0; r < n; r++) {
+            int start = offsets[r];
+            offsets[r] = edge;
+            for (int e = start; e < ends[r]; e++) targets[edge++] = targets[e];
+        }
+        offsets[n] = edge;
+        return new HeapCsrGraph(ids, offsets, edge == targets.length ? targets : Arrays.copyOf(targets, edge));
+    }
+
     /**
      * @param id of the user of which the second level friends are to be returned
      * @return A set of IDs corresponding to the friends of friends of the ID passed as a parameter
@@ -152,7 +262,7 @@ public class CapGraph implements Graph, Cloneable {
      */
     public Set<Integer> get2ndLevelFriends(int id) {
         if (!containsNode(id)) return new HashSet<>();
-        return get2ndLevelFriends(this.map.get(id));
+        return get2ndLevelFriends(getNode(id));
     }
 
     /**
@@ -160,12 +270,15 @@ public class CapGraph implements Graph, Cloneable {
      * @return A set of IDs corresponding to the friends of friends of the ID passed as a parameter
      */
     public Set<Integer> get2ndLevelFriends(CapNode node) {
-        Set<Integer> nodeNeighbors = node.getNeighbours();
+        NeighbourView nodeNeighbors = node.getNeighbourView();
         Set<Integer> secondLevelFriends = new HashSet<>();
 
-        for (Integer neighbour : nodeNeighbors) {
-            Set<Integer> secondNeighbors = this.map.get(neighbour).getNeighbours();
-            secondLevelFriends.addAll(secondNeighbors.stream().filter(i -> !nodeNeighbors.contains(i)).collect(Collectors.toSet()));
+        for (int i = 0; i < nodeNeighbors.size(); i++) {
+            NeighbourView secondNeighbors = getNode(nodeNeighbors.get(i)).getNeighbourView();
+            for (int j = 0; j < secondNeighbors.size(); j++) {
+                int candidate = secondNeighbors.get(j);
+                if (!nodeNeighbors.contains(candidate)) secondLevelFriends.add(candidate);
+            }
         }
 
         secondLevelFriends.remove(node.getId());
@@ -173,40 +286,21 @@ public class CapGraph implements Graph, Cloneable {
     }
 
     /**
+     * The reach of every node is counted by TwoHopReach without building any set; only the winners' sets are built
      * @return A Map where the key represents the ID(s) of the node(s) with a highest reach in two hops, and
      * the value being a Set of IDs representing those two hop potentials (first hop friends/direct friends NOT included);
      * if several nodes share that 'highest two hop reach potential', they are both added.
      */
     public Map<Integer, Set<Integer>> getHighestTwoHop() {
-        Map<Integer, Set<Integer>> returnValue = new HashMap<>();
-        Map<Integer, Set<Integer>> unfilteredMap = new HashMap<>();
-        int highestReach = 0;
-
-        for (Integer id : this.map.keySet()) {
-            Set<Integer> curr2ndLevelFriends = this.get2ndLevelFriends(id);
-            unfilteredMap.put(id, curr2ndLevelFriends);
-            if (curr2ndLevelFriends.size() > highestReach) highestReach = curr2ndLevelFriends.size();
-        }
-
-        if (unfilteredMap.isEmpty()) return unfilteredMap;
-
-        Set<Integer> mostConnectedIDs = getHighestMapValues(unfilteredMap, highestReach);
-        mostConnectedIDs.forEach(id -> returnValue.put(id, unfilteredMap.get(id)));
-
-        return returnValue;
+        return new TwoHopReach(this).getHighestTwoHop();
     }
 
     /**
-     * @param map A map with IDs mapped with a set of their second level connections/friends
-     * @param highestReach An integer with the highest reach recorded when building the map
-     * @return A set with the IDs that have the highest amount of second level connections
+     * Same as getHighestTwoHop, with the counting split among several threads
+     * @param parallelism Amount of threads to use
      */
-    private Set<Integer> getHighestMapValues(Map<Integer, Set<Integer>> map, int highestReach) {
-        if (highestReach == 0) return new HashSet<>();
-        return map.entrySet().stream()
-                .filter(e -> e.getValue().size() == highestReach)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+    public Map<Integer, Set<Integer>> getHighestTwoHop(int parallelism) {
+        return new TwoHopReach(this, parallelism).getHighestTwoHop();
     }
 
     /**
@@ -218,28 +312,66 @@ public class CapGraph implements Graph, Cloneable {
 	public HashMap<Integer, HashSet<Integer>> exportGraph() {
 	    HashMap<Integer, HashSet<Integer>> mapToExport = new HashMap<>();
 
-	    for (Integer id : this.nodeSet) {
-	        Set<Integer> currNeighbours = this.map.get(id).getNeighbours();
-	        mapToExport.put(id, (HashSet<Integer>) currNeighbours);
+	    for (int index = 0; index < this.dictionary.size(); index++) {
+	        Set<Integer> currNeighbours = this.nodes[index].getNeighbours();
+	        mapToExport.put(this.dictionary.idAt(index), (HashSet<Integer>) currNeighbours);
         }
 	    return mapToExport;
 	}
 
+    /**
+     * Edges are equal by their ends, so the argument doesn't have to be the object stored in this graph
+     * @return true if the edge was in the graph
+     */
     public boolean deleteEdge(Edge edge) {
         if (edge == null) throw new NullPointerException("Attempted to delete an edge pointing to a null value.");
-        if (!containsEdge(edge)) return false;
-
-        CapNode fromNode = this.getNode(edge.getFrom());
-        CapNode toNode = this.getNode(edge.getTo());
-        return this.edgeSet.remove(edge) && fromNode.removeNeighbor(toNode.getId(), edge) && toNode.removeNeighbor(fromNode.getId(), edge);
+        if (this.edges.remove(edge.getFrom(), edge.getTo()) < 0) return false;
+        this.getNode(edge.getFrom()).removeNeighbor(edge.getTo());
+        if (this.listeners != null) this.listeners.forEach(listener -> listener.edgeDeleted(edge.getFrom(), edge.getTo()));
+        return true;
     }
 
     public boolean containsEdge(Edge edge) {
-        return this.edgeSet.contains(edge);
+        return edge != null && this.edges.contains(edge.getFrom(), edge.getTo());
     }
 
     public int getEdgeAmount() {
-        return this.edgeSet.size();
+        return this.edges.size();
+    }
+
+    /**
+     * Edge ids are given as edges are added and kept until they are deleted, so they can index arrays of per-edge
+     * values such as the ones getEdgeBetweenness returns
+     * @return The id of the edge going from one node to the other, or -1 if there is no such edge
+     */
+    public int getEdgeId(int from, int to) {
+        return this.edges.idOf(from, to);
+    }
+
+    /**
+     * @return The edge with the given id, or null if there is no such edge
+     */
+    public Edge getEdge(int id) {
+        return this.edges.get(id);
+    }
+
+    /**
+     * @param engine The engine scoring the edges
+     * @return The betweenness score of every edge, indexed by edge id (see getEdgeId); deleted ids are left at zero
+     */
+    public double[] getEdgeBetweenness(BrandesBetweenness engine) {
+        if (engine == null) throw new NullPointerException("The betweenness engine passed to this function points to a null value");
+        CsrGraph snapshot = freeze();
+        double[] snapshotScores = engine.edgeScores(snapshot);
+
+        double[] scores = new double[this.edges.getCapacity()];
+        for (int node = 0; node < snapshot.getSize(); node++) {
+            int from = snapshot.idAt(node);
+            for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                scores[this.edges.idOf(from, snapshot.idAt(snapshot.targetAt(e)))] = snapshotScores[e];
+            }
+        }
+        return scores;
     }
 
     /**
@@ -247,11 +379,11 @@ public class CapGraph implements Graph, Cloneable {
      * @return A boolean which states if the ID corresponds to a node in the loaded graph
      */
     public boolean containsNode(int id) {
-        return this.nodeSet.contains(id);
+        return this.dictionary.contains(id);
     }
 
 	public int getSize() {
-	    return this.size;
+	    return this.dictionary.size();
     }
 
     /**
@@ -273,6 +405,7 @@ public class CapGraph implements Graph, Cloneable {
 //        Set<Integer> secondLevelFriends = ((CapGraph) TestGraph).get2ndLevelFriends(0);
 //        System.out.println(secondLevelFriends);
 
+        Metrics.install(GraphMetrics.printing(System.out));
         long start = System.nanoTime();
 
         Graph FacebookGraph = new CapGraph();
@@ -290,7 +423,7 @@ public class CapGraph implements Graph, Cloneable {
 //        communities.get(communities.size()).forEach(subgraph -> System.out.println(subgraph.getNodes()));
 
         long end = System.nanoTime();
-        System.out.println((end - start) / 1000000000 + " seconds in total for " + FacebookGraph.getSize() + " nodes and " + FacebookGraph.getEdgeAmount() + " edges.");
-        System.out.println(((end - start) / 1000000000) / 60 + " minutes in total.");
+        System.out.println(String.format("%.3f", (end - start) / 1e9) + " seconds in total for " + FacebookGraph.getSize() + " nodes and " + FacebookGraph.getEdgeAmount() + " edges.");
+        System.out.println(String.format("%.2f", (end - start) / 6e10) + " minutes in total.");
     }
 }
@@ -12,7 +12,19 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import graph.pregel.BreadthFirstSearchProgram;
+import graph.pregel.ConnectedComponentsProgram;
+import graph.pregel.PageRankProgram;
+import graph.pregel.PregelEngine;
+import graph.pregel.PregelResult;
+import graph.pregel.StronglyConnectedComponentsProgram;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -96,6 +108,21 @@ public class CapGraphTester {
         assertEquals(node1.getNeighbours(), testNeighbours);
     }
 
+    @Test
+    public void testNeighbourView() {
+        NeighbourView view = notEmptyGraph.getNode(1).getNeighbourView();
+        assertEquals(2, view.size());
+        assertTrue(view.contains(2) && view.contains(4));
+        assertFalse(view.contains(3));
+
+        notEmptyGraph.addEdge(1, 7);
+        assertEquals(3, view.size());
+
+        Set<Integer> viewed = new HashSet<>();
+        for (int i = 0; i < view.size(); i++) viewed.add(view.get(i));
+        assertEquals(notEmptyGraph.getNode(1).getNeighbours(), viewed);
+    }
+
     @Test
     public void testGetEgonet() {
         Graph egonet = notEmptyGraph.getEgonet(1);
@@ -103,6 +130,278 @@ public class CapGraphTester {
         assertEquals(nodesInEgonet, ((CapGraph)egonet).getNodes());
     }
 
+    @Test
+    public void testFreeze() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        CsrGraph snapshot = testGraph.freeze();
+
+        assertEquals(testGraph.getNodes(), snapshot.getNodes());
+        assertEquals(testGraph.getEdgeAmount(), snapshot.getEdgeAmount());
+        assertEquals(testGraph.exportGraph(), snapshot.exportGraph());
+
+        for (Integer id : testGraph.getNodes()) {
+            assertEquals(testGraph.getEgonet(id).exportGraph(), snapshot.getEgonet(id).exportGraph());
+            assertEquals(testGraph.get2ndLevelFriends(id), snapshot.get2ndLevelFriends(id));
+        }
+
+        assertTrue(snapshot.getEgonet(-1).getNodes().isEmpty());
+    }
+
+    @Test
+    public void testEgonetExtractor() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        int[] centers = testGraph.getNodes().stream().mapToInt(Integer::intValue).toArray();
+        Egonet[] egonets = new EgonetExtractor(testGraph, 4).extract(centers);
+
+        for (int i = 0; i < centers.length; i++) {
+            assertEquals(testGraph.getEgonet(centers[i]).exportGraph(), egonets[i].toGraph().exportGraph());
+            assertEquals(centers[i], egonets[i].idAt(egonets[i].getCenterIndex()));
+        }
+        assertNull(new EgonetExtractor(testGraph).extract(-1));
+    }
+
+    @Test
+    public void testTriangleCounter() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        TriangleCounter counter = new TriangleCounter(testGraph);
+        TriangleCounter parallel = new TriangleCounter(testGraph, 4);
+        assertTrue(Arrays.equals(counter.getTriangles(), parallel.getTriangles()));
+
+        // Every friendship goes both ways in this file, so each triangle adds two edges to the egonet of each corner
+        long corners = 0;
+        for (Integer id : testGraph.getNodes()) {
+            int degree = testGraph.getNode(id).getNeighbours().size();
+            int triangles = (testGraph.getEgonet(id).getEdgeAmount() - degree) / 2;
+            assertEquals(triangles, counter.getTriangles(id));
+            if (degree > 1) assertEquals(2.0 * triangles / (degree * (degree - 1)), counter.getClustering(id), 1e-12);
+            corners += triangles;
+        }
+        assertEquals(corners / 3, counter.getTriangleAmount());
+    }
+
+    @Test
+    public void testMappedCsrGraph() throws java.io.IOException {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        java.io.File file = java.io.File.createTempFile("facebook_1000", ".csr");
+        file.deleteOnExit();
+
+        assertTrue(MappedCsrGraph.write(testGraph, file.getPath()));
+        MappedCsrGraph mapped = MappedCsrGraph.open(file.getPath());
+
+        assertEquals(testGraph.exportGraph(), mapped.exportGraph());
+        for (Integer id : testGraph.getNodes()) {
+            assertEquals(testGraph.getEgonet(id).exportGraph(), mapped.getEgonet(id).exportGraph());
+            assertEquals(testGraph.get2ndLevelFriends(id), mapped.get2ndLevelFriends(id));
+        }
+        assertNull(mapped.getNode(-1));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testMappedLoaderOddInteger() throws java.io.IOException {
+        java.io.File file = java.io.File.createTempFile("odd", ".txt");
+        file.deleteOnExit();
+        java.nio.file.Files.write(file.toPath(), "0 1\n1 2\n3".getBytes());
+        util.MappedGraphLoader.loadCsr(file.getPath());
+    }
+
+    @Test
+    public void testOffHeapCsrGraph() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        OffHeapCsrGraph loaded = util.MappedGraphLoader.loadOffHeap("data/facebook_1000.txt");
+
+        assertEquals(testGraph.exportGraph(), loaded.exportGraph());
+        assertEquals(testGraph.exportGraph(), OffHeapCsrGraph.of(testGraph).exportGraph());
+        for (Integer id : testGraph.getNodes()) {
+            assertEquals(testGraph.getEgonet(id).exportGraph(), loaded.getEgonet(id).exportGraph());
+        }
+        assertEquals(new SCC(testGraph).getComponentAmount(), new SCC(loaded).getComponentAmount());
+
+        // Chunks of eight ints, so rows and arrays span many of them; repeated edges are dropped as fromEdges does
+        Random random = new Random(20);
+        int count = 5000;
+        int[] from = new int[count];
+        int[] to = new int[count];
+        OffHeapCsrGraph.Builder builder = new OffHeapCsrGraph.Builder(3);
+        for (int i = 0; i < count; i++) {
+            from[i] = random.nextInt(300) - 100;
+            to[i] = random.nextInt(300) - 100;
+            builder.addEdge(from[i], to[i]);
+        }
+        CsrGraph expected = CsrGraph.fromEdges(from, to, count);
+        CsrGraph built = builder.build();
+        assertEquals(expected.getSize(), built.getSize());
+        assertEquals(expected.getEdgeAmount(), built.getEdgeAmount());
+        for (int node = 0; node < expected.getSize(); node++) {
+            assertEquals(expected.idAt(node), built.idAt(node));
+            assertEquals(expected.edgeEnd(node), built.edgeEnd(node));
+        }
+        for (int e = 0; e < expected.getEdgeAmount(); e++) assertEquals(expected.targetAt(e), built.targetAt(e));
+    }
+
+    @Test
+    public void testSCCOnDeepGraph() {
+        // A single cycle through a million nodes: a recursive DFS would overflow the stack long before the end
+        int n = 1000000;
+        int[] from = new int[n];
+        int[] to = new int[n];
+        for (int i = 0; i < n; i++) {
+            from[i] = i;
+            to[i] = (i + 1) % n;
+        }
+        assertEquals(1, new SCC(CsrGraph.fromEdges(from, to, n)).getComponentAmount());
+
+        // Breaking the cycle leaves every node on its own
+        to[n - 1] = n;
+        SCC path = new SCC(CsrGraph.fromEdges(from, to, n));
+        assertEquals(n + 1, path.getComponentAmount());
+        assertEquals(-1, path.getComponent(-1));
+    }
+
+    @Test
+    public void testParallelSCC() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_2000.txt");
+
+        Set<Set<Integer>> sequential = new HashSet<>();
+        for (Graph scc : testGraph.getSCCs()) sequential.add(scc.getNodes());
+        Set<Set<Integer>> parallel = new HashSet<>();
+        for (Graph scc : testGraph.getSCCs(4)) parallel.add(scc.getNodes());
+
+        assertEquals(sequential, parallel);
+
+        // facebook_2000 is symmetric, so its SCCs are just its connected components; a sparse random digraph is not
+        CapGraph directed = new CapGraph();
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) directed.addVertex(i);
+        for (int i = 0; i < 3000; i++) directed.addEdge(random.nextInt(2000), random.nextInt(2000));
+
+        sequential.clear();
+        for (Graph scc : directed.getSCCs()) sequential.add(scc.getNodes());
+        parallel.clear();
+        for (Graph scc : directed.getSCCs(4)) parallel.add(scc.getNodes());
+
+        assertTrue(sequential.stream().anyMatch(scc -> scc.size() > 1));
+        assertTrue(sequential.stream().filter(scc -> scc.size() == 1).count() > 1);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testHyperANF() {
+        CsrGraph snapshot = util.MappedGraphLoader.loadCsr("data/facebook_1000.txt");
+        HyperANF sequential = new HyperANF(snapshot, 7, 1, 42L);
+        HyperANF parallel = new HyperANF(snapshot, 7, 4, 42L);
+        assertTrue(Arrays.equals(sequential.getNeighbourhoodFunction(), parallel.getNeighbourhoodFunction()));
+        assertEquals(sequential.getTopReach(3), parallel.getTopReach(3));
+
+        // Exact neighbourhood function, with a BFS from every node
+        double[] exact = new double[sequential.getHops() + 1];
+        int[] distance = new int[snapshot.getSize()];
+        int[] queue = new int[snapshot.getSize()];
+        for (int source = 0; source < snapshot.getSize(); source++) {
+            Arrays.fill(distance, -1);
+            distance[source] = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int node = queue[head++];
+                for (int t = distance[node]; t < exact.length; t++) exact[t]++;
+                for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                    int neighbour = snapshot.targetAt(e);
+                    if (distance[neighbour] < 0) {
+                        distance[neighbour] = distance[node] + 1;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        double[] estimated = sequential.getNeighbourhoodFunction();
+        for (int t = 0; t < estimated.length; t++) assertEquals(exact[t], estimated[t], 0.1 * exact[t]);
+    }
+
+    @Test
+    public void testParallelBetweenness() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        CsrGraph snapshot = testGraph.freeze();
+
+        double[] sequential = new BrandesBetweenness().edgeScores(snapshot);
+        double[] parallel = new BrandesBetweenness(4).edgeScores(snapshot);
+
+        // The additions are grouped by thread, so only the last bits may change with the amount of threads
+        assertArrayEquals(sequential, parallel, 1e-9);
+        // But not from one run to the next: partials are merged in the same order every time
+        assertTrue(Arrays.equals(parallel, new BrandesBetweenness(4).edgeScores(snapshot)));
+        assertTrue(Arrays.equals(new BrandesBetweenness(3).edgeScores(snapshot), new BrandesBetweenness(3).edgeScores(snapshot)));
+    }
+
+    @Test
+    public void testSampledBetweenness() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        CsrGraph snapshot = testGraph.freeze();
+        BrandesBetweenness exact = new BrandesBetweenness();
+
+        // A sample as large as the graph is no sample at all
+        assertTrue(Arrays.equals(exact.edgeScores(snapshot), exact.withSampling(snapshot.getSize(), 1L).edgeScores(snapshot)));
+
+        BrandesBetweenness sampled = exact.withSampling(100, 1L);
+        assertEquals(100, sampled.getSampleSize(snapshot));
+        assertArrayEquals(sampled.edgeScores(snapshot), new BrandesBetweenness(4).withSampling(100, 1L).edgeScores(snapshot), 1e-9);
+
+        // ceil(ln(2 * 1000 / 0.05) / (2 * 0.1^2)) = ceil(529.83)
+        assertEquals(530, BrandesBetweenness.samplesForErrorBound(1000, 0.1, 0.05));
+
+        // With a fixed seed the estimate must be within the bound; the sample is smaller than the graph here
+        double epsilon = 0.1;
+        BrandesBetweenness bounded = exact.withErrorBound(epsilon, 0.1, 42L);
+        int sampleSize = bounded.getSampleSize(snapshot);
+        assertEquals(BrandesBetweenness.samplesForErrorBound(snapshot.getEdgeAmount(), epsilon, 0.1), sampleSize);
+        assertTrue(sampleSize < snapshot.getSize());
+
+        double[] exactScores = exact.edgeScores(snapshot);
+        double[] estimates = bounded.edgeScores(snapshot);
+        double bound = epsilon * snapshot.getSize() * (snapshot.getSize() - 1.0);
+        for (int e = 0; e < exactScores.length; e++) assertEquals(exactScores[e], estimates[e], bound);
+    }
+
+    @Test
+    public void testLouvainCommunities() {
+        CapGraph smallTestGraph = new CapGraph();
+        util.GraphLoader.loadGraph(smallTestGraph, "data/small_test_graph.txt");
+        LouvainCommunities louvain = new LouvainCommunities(smallTestGraph);
+
+        Set<Set<Integer>> expected = new HashSet<>();
+        expected.add(new HashSet<>(Arrays.asList(1, 2, 3)));
+        expected.add(new HashSet<>(Arrays.asList(4, 5, 6)));
+        expected.add(new HashSet<>(Arrays.asList(7, 8)));
+        expected.add(new HashSet<>(Arrays.asList(9, 10, 11)));
+        expected.add(new HashSet<>(Arrays.asList(12, 13, 14)));
+
+        Map<Integer, Set<Graph>> communities = louvain.getCommunities();
+        Set<Set<Integer>> found = new HashSet<>();
+        communities.get(communities.size()).forEach(community -> found.add(community.getNodes()));
+
+        assertEquals(expected, found);
+        assertTrue(louvain.getModularity(louvain.getLevelAmount()) > 0.5);
+    }
+
+    @Test
+    public void testLabelPropagationIsDeterministic() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+
+        int[] sequential = new LabelPropagationCommunities(testGraph, 1, 7L).getMembership();
+        int[] parallel = new LabelPropagationCommunities(testGraph.freeze(), 4, 7L).getMembership();
+        assertTrue(Arrays.equals(sequential, parallel));
+    }
+
     /*
     Lists of 0's friends of friends (Facebook data):
     [0, 334], [0, 64, 480, 226, 355, 356, 622, 207, 562, 312, 698, 671], [0, 195, 693, 438, 391, 424, 552]
@@ -193,4 +492,544 @@ public class CapGraphTester {
 
         assertEquals(expected, smallTestGraph.getHighestTwoHop());
     }
+
+    @Test
+    public void testTwoHopReach() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        TwoHopReach sequential = new TwoHopReach(testGraph);
+        TwoHopReach parallel = new TwoHopReach(testGraph, 4);
+
+        for (Integer id : testGraph.getNodes()) {
+            assertEquals(testGraph.get2ndLevelFriends(id).size(), sequential.getReach(id));
+        }
+        assertTrue(Arrays.equals(sequential.getReach(), parallel.getReach()));
+        assertEquals(sequential.getHighestTwoHop(), parallel.getHighestTwoHop());
+        assertEquals(-1, sequential.getReach(-1));
+    }
+
+    @Test
+    public void testMetrics() {
+        List<String> reports = new ArrayList<>();
+        List<int[]> iterations = new ArrayList<>();
+        graph.metrics.Metrics.install(new graph.metrics.GraphMetrics() {
+            @Override
+            public void communityIteration(int iteration, long betweennessNanos, int edgesRemoved, int componentAmount,
+                                           int largestComponent, long allocatedBytes) {
+                iterations.add(new int[] {iteration, edgesRemoved, componentAmount, largestComponent});
+            }
+
+            @Override
+            public void sccsFound(int nodes, int componentAmount, int parallelism, long nanos) {
+                reports.add("scc " + nodes + " " + componentAmount);
+            }
+
+            @Override
+            public void egonetExtracted(int center, int nodes, long nanos) {
+                reports.add("egonet " + center + " " + nodes);
+            }
+
+            @Override
+            public void graphLoaded(String filename, long lines, long nanos) {
+                reports.add("load " + filename + " " + lines);
+            }
+        });
+
+        CapGraph smallTestGraph = new CapGraph();
+        try {
+            util.GraphLoader.loadGraph(smallTestGraph, "data/small_test_graph.txt");
+            smallTestGraph.getEgonet(8);
+            smallTestGraph.freeze().getEgonet(-1);
+            new SCC(smallTestGraph);
+            new GraphCommunities(smallTestGraph, 2);
+        }
+        finally {
+            graph.metrics.Metrics.uninstall();
+        }
+
+        assertEquals(Arrays.asList("load data/small_test_graph.txt 34", "egonet 8 " + smallTestGraph.getEgonet(8).getSize(),
+                "egonet -1 0", "scc 14 " + new SCC(smallTestGraph).getComponentAmount()), reports);
+        assertFalse(iterations.isEmpty());
+        for (int i = 0; i < iterations.size(); i++) {
+            assertEquals(i + 1, iterations.get(i)[0]);
+            assertTrue(iterations.get(i)[1] == 1 || iterations.get(i)[1] == 2);
+            assertTrue(iterations.get(i)[3] <= 14);
+        }
+        assertTrue(iterations.get(iterations.size() - 1)[2] >= 2);
+
+        // Nothing is reported once uninstalled
+        new SCC(smallTestGraph);
+        assertEquals(4, reports.size());
+
+        // With a parallel engine the allocation of its threads is reported too: two cliques joined by a bridge
+        CapGraph bridged = new CapGraph();
+        for (int i = 0; i < 80; i++) bridged.addVertex(i);
+        for (int i = 0; i < 80; i++) {
+            for (int j = 0; j < 80; j++) if (i != j && i / 40 == j / 40) bridged.addEdge(i, j);
+        }
+        bridged.addEdge(0, 40);
+        bridged.addEdge(40, 0);
+        List<Long> allocations = new ArrayList<>();
+        graph.metrics.Metrics.install(new graph.metrics.GraphMetrics() {
+            @Override
+            public void communityIteration(int iteration, long betweennessNanos, int edgesRemoved, int componentAmount,
+                                           int largestComponent, long allocatedBytes) {
+                allocations.add(allocatedBytes);
+            }
+        });
+        BrandesBetweenness engine = new BrandesBetweenness(2);
+        try {
+            new GraphCommunities(bridged, 2, engine);
+        }
+        finally {
+            graph.metrics.Metrics.uninstall();
+        }
+        assertEquals(1, allocations.size());
+        if (graph.metrics.Metrics.allocatedBytes() >= 0) {
+            // Each of the two workers allocates at least a partial score per edge
+            assertTrue(engine.getWorkerAllocatedBytes() >= 2 * 8L * bridged.getEdgeAmount());
+            assertTrue(allocations.get(0) >= engine.getWorkerAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void testEdgeIndex() {
+        CapGraph smallTestGraph = new CapGraph();
+        util.GraphLoader.loadGraph(smallTestGraph, "data/small_test_graph.txt");
+        int edgeAmount = smallTestGraph.getEdgeAmount();
+
+        assertEquals(new Edge(7, 8), new Edge(7, 8));
+        assertNotEquals(new Edge(7, 8), new Edge(8, 7));
+        assertTrue(smallTestGraph.containsEdge(new Edge(7, 8)));
+        assertFalse(smallTestGraph.containsEdge(new Edge(7, 14)));
+
+        int id = smallTestGraph.getEdgeId(7, 8);
+        int reverse = smallTestGraph.getEdges().reverseIdOf(id);
+        assertEquals(new Edge(7, 8), smallTestGraph.getEdge(id));
+        assertEquals(smallTestGraph.getEdgeId(8, 7), reverse);
+
+        // Ids are kept by the other edges, and the freed one goes to the next edge added
+        assertTrue(smallTestGraph.deleteEdge(new Edge(7, 8)));
+        assertFalse(smallTestGraph.deleteEdge(new Edge(7, 8)));
+        assertFalse(smallTestGraph.getNode(7).hasNeighbour(8));
+        assertTrue(smallTestGraph.getNode(8).hasNeighbour(7));
+        assertEquals(edgeAmount - 1, smallTestGraph.getEdgeAmount());
+        assertEquals(-1, smallTestGraph.getEdgeId(7, 8));
+        assertNull(smallTestGraph.getEdge(id));
+        assertEquals(-1, smallTestGraph.getEdges().reverseIdOf(reverse));
+        assertEquals(reverse, smallTestGraph.getEdgeId(8, 7));
+        int capacity = smallTestGraph.getEdges().getCapacity();
+        smallTestGraph.addEdge(7, 8);
+        assertEquals(id, smallTestGraph.getEdgeId(7, 8));
+        assertEquals(reverse, smallTestGraph.getEdgeId(8, 7));
+
+        // A stream of additions and deletions doesn't grow the ids past the most edges held at once
+        for (int round = 0; round < 1000; round++) {
+            smallTestGraph.addEdge(7, 14);
+            assertTrue(smallTestGraph.deleteEdge(new Edge(7, 14)));
+        }
+        assertEquals(capacity + 1, smallTestGraph.getEdges().getCapacity());
+
+        double[] scores = smallTestGraph.getEdgeBetweenness(new BrandesBetweenness());
+        ComponentBetweenness expected = new ComponentBetweenness(smallTestGraph, new BrandesBetweenness());
+        for (Edge edge : smallTestGraph.getEdges()) {
+            assertEquals(expected.getScore(edge.getFrom(), edge.getTo()), scores[smallTestGraph.getEdgeId(edge.getFrom(), edge.getTo())], 1e-9);
+        }
+
+        LongIntHashMap map = new LongIntHashMap(-1);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            long key = EdgeIndex.pack(random.nextInt(64) - 8, random.nextInt(64) - 8);
+            int previous = reference.getOrDefault(key, -1);
+            if (random.nextInt(3) == 0) {
+                assertEquals(previous, map.remove(key));
+                reference.remove(key);
+            }
+            else {
+                assertEquals(previous, map.put(key, i));
+                reference.put(key, i);
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : reference.entrySet()) assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+    }
+
+    @Test
+    public void testStreamingBetweenness() {
+        CapGraph testGraph = new CapGraph();
+        Random random = new Random(19);
+        for (int id = 0; id < 60; id++) testGraph.addVertex(id * 3);
+        for (int i = 0; i < 150; i++) testGraph.addEdge(random.nextInt(60) * 3, random.nextInt(60) * 3);
+
+        StreamingBetweenness streaming = new StreamingBetweenness(testGraph);
+        StreamingBetweenness sampled = new StreamingBetweenness(testGraph, 20, 5L);
+        int changes = 0;
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(64) * 3;
+            int to = random.nextInt(64) * 3;
+            testGraph.addVertex(from);
+            testGraph.addVertex(to);
+            if (random.nextInt(3) == 0) testGraph.deleteEdge(new Edge(from, to));
+            else testGraph.addEdge(from, to);
+            changes++;
+        }
+        // Most changes don't touch most sources
+        assertTrue(streaming.getSourcesUpdated() < (long) changes * testGraph.getSize() / 2);
+
+        double[] expected = testGraph.getEdgeBetweenness(new BrandesBetweenness());
+        for (Edge edge : testGraph.getEdges()) {
+            assertEquals(expected[testGraph.getEdgeId(edge.getFrom(), edge.getTo())], streaming.getEdgeBetweenness(edge.getFrom(), edge.getTo()), 1e-6);
+        }
+
+        StreamingBetweenness fresh = new StreamingBetweenness(testGraph);
+        fresh.detach();
+        for (int id : testGraph.getNodes()) {
+            assertEquals(fresh.getVertexBetweenness(id), streaming.getVertexBetweenness(id), 1e-6);
+        }
+        assertEquals(-1.0, streaming.getVertexBetweenness(-1), 0.0);
+        assertEquals(0.0, streaming.getEdgeBetweenness(-1, 0), 0.0);
+
+        // New nodes aren't sources of a sample, but the incremental scores match searching again from its sources
+        assertEquals(20, sampled.getSampleSize());
+        Map<Edge, Double> incremental = new HashMap<>();
+        for (Edge edge : testGraph.getEdges()) incremental.put(edge, sampled.getEdgeBetweenness(edge.getFrom(), edge.getTo()));
+        sampled.recompute();
+        for (Edge edge : testGraph.getEdges()) {
+            assertEquals(sampled.getEdgeBetweenness(edge.getFrom(), edge.getTo()), incremental.get(edge), 1e-6);
+        }
+
+        streaming.detach();
+        testGraph.addEdge(0, 3);
+        testGraph.deleteEdge(new Edge(0, 3));
+        assertEquals(fresh.getVertexBetweenness(0), streaming.getVertexBetweenness(0), 1e-6);
+    }
+
+    @Test
+    public void testIdDictionary() {
+        IdDictionary dictionary = new IdDictionary();
+        int[] ids = {456000, -3, 17, 0, 99999};
+        for (int i = 0; i < ids.length; i++) assertEquals(i, dictionary.add(ids[i]));
+        assertEquals(2, dictionary.add(17));
+        assertEquals(ids.length, dictionary.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, dictionary.indexOf(ids[i]));
+            assertEquals(ids[i], dictionary.idAt(i));
+        }
+        assertEquals(-1, dictionary.indexOf(18));
+
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/twitter_higgs.txt");
+        for (int index = 0; index < testGraph.getSize(); index += 97) {
+            assertEquals(index, testGraph.indexOf(testGraph.idAt(index)));
+            assertEquals(testGraph.idAt(index), testGraph.getNode(testGraph.idAt(index)).getId());
+        }
+
+        // Edges to IDs that aren't nodes, as the ones kept by the sub-graphs of getSCCs, are left out of snapshots
+        for (Graph scc : testGraph.getSCCs()) {
+            if (scc.getSize() < 2) continue;
+            int[] members = scc.getNodes().stream().mapToInt(Integer::intValue).toArray();
+            CsrGraph frozen = ((CapGraph) scc).freeze();
+            assertEquals(CsrGraph.of(testGraph, members).exportGraph(), frozen.exportGraph());
+            break;
+        }
+    }
+
+    @Test
+    public void testPregel() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/twitter_higgs.txt");
+        CsrGraph snapshot = testGraph.freeze();
+        int n = snapshot.getSize();
+
+        PregelEngine single = new PregelEngine(testGraph, 1);
+        PregelEngine sharded = new PregelEngine(testGraph, 4);
+        assertEquals(4, sharded.getShardAmount());
+
+        // Same partition as Tarjan's, whatever the amount of shards
+        int[] expected = new SCC(snapshot).getComponents();
+        for (PregelEngine engine : Arrays.asList(single, sharded)) {
+            int[] components = StronglyConnectedComponentsProgram.components(engine.run(new StronglyConnectedComponentsProgram()));
+            assertSamePartition(expected, components);
+        }
+
+        // Weak components are the strong ones of the undirected snapshot; labels are the smallest index of each
+        int[] weak = new SCC(snapshot.toUndirected()).getComponents();
+        PregelResult<Integer> labels = sharded.run(new ConnectedComponentsProgram());
+        int[] labelArray = new int[n];
+        for (int index = 0; index < n; index++) {
+            labelArray[index] = labels.valueAt(index);
+            assertTrue(labelArray[index] <= index);
+        }
+        assertSamePartition(weak, labelArray);
+
+        int source = snapshot.idAt(0);
+        int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        distances[0] = 0;
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                int target = snapshot.targetAt(e);
+                if (distances[target] < 0) {
+                    distances[target] = distances[node] + 1;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        PregelResult<Integer> bfs = sharded.run(new BreadthFirstSearchProgram(source));
+        for (int index = 0; index < n; index++) {
+            Integer distance = bfs.valueAt(index);
+            assertEquals(distances[index], distance == null ? -1 : distance.intValue());
+        }
+        assertNull(bfs.getValue(Integer.MIN_VALUE));
+
+        PregelResult<Double> ranks = single.run(new PageRankProgram(20, 0.85));
+        PregelResult<Double> shardedRanks = sharded.run(new PageRankProgram(20, 0.85));
+        assertEquals(21, ranks.getSupersteps());
+        double sum = 0;
+        for (int index = 0; index < n; index++) {
+            sum += ranks.valueAt(index);
+            assertEquals(ranks.valueAt(index), shardedRanks.valueAt(index), 1e-12);
+        }
+        assertEquals(1.0, sum, 1e-9);
+    }
+
+    @Test
+    public void testDistributedBetweenness() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        CsrGraph snapshot = testGraph.freeze();
+        double[] expected = new BrandesBetweenness().edgeScores(snapshot);
+
+        try (DistributedBetweenness distributed = new DistributedBetweenness(2)) {
+            assertEquals(0, distributed.getAliveWorkers());
+            for (int run = 0; run < 2; run++) assertArrayEquals(expected, distributed.edgeScores(snapshot), 1e-9);
+            assertEquals(2, distributed.getAliveWorkers());
+            assertEquals(0, distributed.getFailures());
+
+            // Too small to be worth shipping, so it is scored here
+            assertArrayEquals(new BrandesBetweenness().edgeScores(notEmptyGraph.freeze()), distributed.edgeScores(notEmptyGraph.freeze()), 0.0);
+        }
+
+        // Both workers exit after their first range; the rest are reassigned and finally computed here
+        try (DistributedBetweenness failing = new DistributedBetweenness(2, 60_000, Collections.singletonList("1"))) {
+            assertArrayEquals(expected, failing.edgeScores(snapshot), 1e-9);
+            assertEquals(0, failing.getAliveWorkers());
+            assertEquals(2, failing.getFailures());
+            assertArrayEquals(expected, failing.edgeScores(snapshot), 1e-9);
+        }
+    }
+
+    @Test
+    public void testQueryCache() {
+        CapGraph testGraph = new CapGraph();
+        util.GraphLoader.loadGraph(testGraph, "data/facebook_1000.txt");
+        QueryCache cache = new QueryCache(testGraph, Long.MAX_VALUE);
+        int[] ids = testGraph.getNodes().stream().mapToInt(Integer::intValue).sorted().toArray();
+
+        int center = ids[0];
+        CsrGraph egonet = cache.getEgonet(center);
+        assertEquals(testGraph.getEgonet(center).exportGraph(), egonet.exportGraph());
+        assertSame(egonet, cache.getEgonet(center));
+        Set<Integer> friends = cache.get2ndLevelFriends(center);
+        assertEquals(testGraph.get2ndLevelFriends(center), friends);
+        assertSame(friends, cache.get2ndLevelFriends(center));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        try {
+            friends.add(-1);
+            fail("Cached results must be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+
+        // Random changes: every cached answer must match a fresh query, and untouched entries must survive
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int id = ids[random.nextInt(ids.length)];
+            assertEquals(testGraph.getEgonet(id).exportGraph(), cache.getEgonet(id).exportGraph());
+            assertEquals(testGraph.get2ndLevelFriends(id), cache.get2ndLevelFriends(id));
+
+            int from = ids[random.nextInt(ids.length)];
+            int to = ids[random.nextInt(ids.length)];
+            if (random.nextBoolean()) testGraph.addEdge(from, to);
+            else testGraph.deleteEdge(new Edge(from, to));
+        }
+        assertTrue(cache.getInvalidations() > 0);
+        assertTrue(cache.getHits() > 2);
+
+        // A self-loop must not make the node watch the entry twice
+        CapGraph looped = new CapGraph();
+        looped.addVertex(1);
+        looped.addVertex(2);
+        looped.addEdge(1, 1);
+        looped.addEdge(1, 2);
+        QueryCache loopedCache = new QueryCache(looped, Long.MAX_VALUE);
+        assertEquals(looped.get2ndLevelFriends(1), loopedCache.get2ndLevelFriends(1));
+        looped.addEdge(2, 1);
+        assertEquals(0, loopedCache.size());
+        assertEquals(looped.get2ndLevelFriends(1), loopedCache.get2ndLevelFriends(1));
+        loopedCache.detach();
+
+        long invalidations = cache.getInvalidations();
+        int far = -1;
+        for (int id : ids) {
+            if (id != center && cache.getEgonet(center).indexOf(id) < 0 && !testGraph.containsEdge(new Edge(id, center))) {
+                far = id;
+                break;
+            }
+        }
+        egonet = cache.getEgonet(center);
+        testGraph.addVertex(-5);
+        testGraph.addEdge(far, -5);
+        assertSame(egonet, cache.getEgonet(center));
+        testGraph.addEdge(center, -5);
+        assertNotSame(egonet, cache.getEgonet(center));
+        assertTrue(cache.getEgonet(center).indexOf(-5) >= 0);
+        assertTrue(cache.getInvalidations() > invalidations);
+
+        // Eviction keeps the total weight under the bound, least recently used first
+        QueryCache small = new QueryCache(testGraph, 200);
+        for (int id : ids) small.get2ndLevelFriends(id);
+        assertTrue(small.getWeight() <= 200);
+        assertTrue(small.getEvictions() > 0);
+        assertEquals(small.getMisses(), small.getEvictions() + small.size() + skipped(testGraph, ids, 200));
+
+        small.detach();
+        cache.detach();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    /**
+     * @return The amount of nodes whose second level friends weigh more than the bound, which are never cached
+     */
+    private static long skipped(CapGraph graph, int[] ids, long maxWeight) {
+        return Arrays.stream(ids).filter(id -> graph.get2ndLevelFriends(id).size() + 1 > maxWeight).count();
+    }
+
+    @Test
+    public void testConcurrentCapGraph() throws InterruptedException {
+        CapGraph expected = new CapGraph();
+        util.GraphLoader.loadGraph(expected, "data/twitter_higgs.txt");
+        List<Edge> edges = new ArrayList<>();
+        for (Edge edge : expected.getEdges()) edges.add(edge);
+        int[] ids = expected.getNodes().stream().mapToInt(Integer::intValue).toArray();
+
+        ConcurrentCapGraph testGraph = new ConcurrentCapGraph();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        int writers = 8;
+
+        // Writers ingest interleaved slices (and part of them twice) while readers check every view they take
+        runConcurrently(writers, 4, failures, writer -> {
+            for (int i = writer; i < edges.size(); i += writers) {
+                Edge edge = edges.get(i);
+                testGraph.addVertex(edge.getFrom());
+                testGraph.addVertex(edge.getTo());
+                testGraph.addEdge(edge);
+                if (i % 3 == 0) {
+                    Edge again = edges.get(i / 2);
+                    testGraph.addVertex(again.getFrom());
+                    testGraph.addEdge(again);
+                }
+            }
+        }, random -> checkView(testGraph, expected, ids[random.nextInt(ids.length)], true));
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(expected.getSize(), testGraph.getSize());
+        assertEquals(expected.getEdgeAmount(), testGraph.getEdgeAmount());
+        assertEquals(expected.exportGraph(), testGraph.exportGraph());
+
+        // Half the edges are deleted concurrently, each one by two threads of which only one may succeed
+        AtomicInteger deleted = new AtomicInteger();
+        runConcurrently(writers, 4, failures, writer -> {
+            for (int i = writer / 2; i < edges.size(); i += writers / 2) {
+                if (i % 2 == 0 && testGraph.deleteEdge(edges.get(i))) deleted.incrementAndGet();
+            }
+        }, random -> checkView(testGraph, expected, ids[random.nextInt(ids.length)], false));
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (int i = 0; i < edges.size(); i += 2) expected.deleteEdge(edges.get(i));
+        assertEquals(edges.size() - expected.getEdgeAmount(), deleted.get());
+        assertEquals(expected.getEdgeAmount(), testGraph.getEdgeAmount());
+        assertEquals(expected.exportGraph(), testGraph.exportGraph());
+        for (Edge edge : edges) assertEquals(expected.containsEdge(edge), testGraph.containsEdge(edge));
+        assertEquals(expected.freeze().exportGraph(), testGraph.freeze().exportGraph());
+        assertEquals(new SCC(expected).getComponentAmount(), new SCC(testGraph).getComponentAmount());
+
+        int center = edges.get(1).getFrom();
+        assertEquals(expected.getEgonet(center).exportGraph(), testGraph.getEgonet(center).exportGraph());
+        try {
+            testGraph.addEdge(Integer.MIN_VALUE, center);
+            fail("Edges must begin at a node of the graph");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * A view never has repeated neighbours nor neighbours the node never had, and never changes once taken; while
+     * edges are only being added, every neighbour in it is also found by containsEdge
+     */
+    private static void checkView(ConcurrentCapGraph graph, CapGraph expected, int id, boolean growing) {
+        Node node = graph.getNode(id);
+        if (node == null) return;
+        NeighbourView view = node.getNeighbourView();
+        int size = view.size();
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            assertTrue(seen.add(view.get(i)));
+            assertTrue(expected.getNode(id).hasNeighbour(view.get(i)));
+            if (growing) assertTrue(graph.containsEdge(new Edge(id, view.get(i))));
+        }
+        for (int i = 0; i < size; i++) assertTrue(seen.contains(view.get(i)));
+        assertEquals(size, view.size());
+    }
+
+    /**
+     * Runs the writers to completion while the readers loop over their check, and collects whatever any of them throws
+     */
+    private static void runConcurrently(int writers, int readers, Queue<Throwable> failures, IntConsumer write,
+                                        Consumer<Random> read) throws InterruptedException {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> writerThreads = new ArrayList<>();
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            int writer = i;
+            writerThreads.add(new Thread(() -> {
+                try {
+                    write.accept(writer);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (int i = 0; i < readers; i++) {
+            Random random = new Random(i);
+            readerThreads.add(new Thread(() -> {
+                try {
+                    while (writing.get()) read.accept(random);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        readerThreads.forEach(Thread::start);
+        writerThreads.forEach(Thread::start);
+        for (Thread thread : writerThreads) thread.join();
+        writing.set(false);
+        for (Thread thread : readerThreads) thread.join();
+    }
+
+    private static void assertSamePartition(int[] expected, int[] actual) {
+        assertEquals(expected.length, actual.length);
+        Map<Integer, Integer> forward = new HashMap<>();
+        Map<Integer, Integer> backward = new HashMap<>();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], (int) backward.merge(actual[i], expected[i], (first, second) -> first));
+            assertEquals(actual[i], (int) forward.merge(expected[i], actual[i], (first, second) -> first));
+        }
+    }
 }
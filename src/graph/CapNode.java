@@ -1,8 +1,5 @@
 package graph;
 
-import com.sun.xml.internal.bind.v2.TODO;
-
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -13,13 +10,11 @@ import java.util.Set;
 
 public class CapNode implements Node {
     private int id;
-    private Set<Integer> neighbours;
-    private Set<Edge> outgoingEdges;
+    private IntHashSet neighbours;
 
     public CapNode(int id) {
         this.id = id;
-        this.neighbours = new HashSet<>();
-        this.outgoingEdges = new HashSet<>();
+        this.neighbours = new IntHashSet();
     }
 
     @Override
@@ -29,26 +24,24 @@ public class CapNode implements Node {
 
     @Override
     public boolean addNeighbour(Edge outEdge) {
-        this.outgoingEdges.add(outEdge);
         return this.neighbours.add(outEdge.getTo());
     }
 
     @Override
     public Set<Integer> getNeighbours() {
-        return new HashSet<>(this.neighbours);
+        return this.neighbours.toSet();
     }
 
-    public boolean hasNeighbour(int neighbourID) {
-        return this.neighbours.contains(neighbourID);
+    @Override
+    public NeighbourView getNeighbourView() {
+        return this.neighbours;
     }
 
-    boolean removeNeighbor(Integer id, Edge edge) {
-        this.neighbours.remove(id);
-        this.outgoingEdges.remove(edge);
-        return this.neighbours.contains(id) && this.outgoingEdges.contains(edge);
+    public boolean hasNeighbour(int neighbourID) {
+        return this.neighbours.contains(neighbourID);
     }
 
-    Set<Edge> getOutgoingEdges() {
-        return this.outgoingEdges;
+    boolean removeNeighbor(int id) {
+        return this.neighbours.remove(id);
     }
 }
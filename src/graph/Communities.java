@@ -0,0 +1,62 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Helpers shared by the community detection engines that work with membership arrays (one community number per dense
+ * index of a CsrGraph) instead of sub-graphs, to hand out the same Set of sub-graphs GraphCommunities does
+ */
+
+final class Communities {
+    private Communities() {
+    }
+
+    /**
+     * @param snapshot The snapshot the membership refers to
+     * @param membership Community number of every dense index, from 0 to the amount of communities - 1
+     * @return One CapGraph per community, with its nodes and every edge of the snapshot between two of them
+     */
+    static Set<Graph> toSubgraphs(CsrGraph snapshot, int[] membership) {
+        int amount = 0;
+        for (int community : membership) amount = Math.max(amount, community + 1);
+
+        CapGraph[] subgraphs = new CapGraph[amount];
+        for (int c = 0; c < amount; c++) subgraphs[c] = new CapGraph();
+        for (int node = 0; node < membership.length; node++) subgraphs[membership[node]].addVertex(snapshot.idAt(node));
+
+        for (int node = 0; node < membership.length; node++) {
+            for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                int neighbour = snapshot.targetAt(e);
+                if (membership[neighbour] == membership[node]) {
+                    subgraphs[membership[node]].addEdge(snapshot.idAt(node), snapshot.idAt(neighbour));
+                }
+            }
+        }
+
+        Set<Graph> communities = new HashSet<>();
+        for (CapGraph subgraph : subgraphs) {
+            if (subgraph.getSize() > 0) communities.add(subgraph);
+        }
+        return communities;
+    }
+
+    /**
+     * Renumbers the communities in order of first appearance, so they go from 0 to the amount of communities - 1
+     * @param membership Community number of every node, each lower than the length of the array; renumbered in place
+     * @return The amount of communities
+     */
+    static int compact(int[] membership) {
+        int[] renumbered = new int[membership.length];
+        Arrays.fill(renumbered, -1);
+        int amount = 0;
+        for (int node = 0; node < membership.length; node++) {
+            int community = membership[node];
+            if (renumbered[community] < 0) renumbered[community] = amount++;
+            membership[node] = renumbered[community];
+        }
+        return amount;
+    }
+}
@@ -0,0 +1,173 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Keeps the edge betweenness scores of a graph per weakly connected component, for Girvan-Newman's loop.
+ * A shortest path never leaves the component it starts in, so the score of an edge only depends on the sources of its
+ * own component, and deleting an edge can only change the scores inside the component that contained it. Hence only
+ * that component (or the two it splits into) is scored again after a deletion; the scores of every other component
+ * are reused as they are. Once the graph has split into many communities each iteration costs a fraction of a full pass
+ */
+
+public class ComponentBetweenness {
+    private final Graph graph;
+    private final BrandesBetweenness engine;
+    // Only components with at least one edge are kept, since the others have nothing to score
+    private final List<Component> components;
+
+    /**
+     * Scores every component of the graph
+     * @param graph The graph being split; it is read again (only the affected part) every time componentChanged is called
+     * @param engine The engine used to score each component
+     */
+    public ComponentBetweenness(Graph graph, BrandesBetweenness engine) {
+        if (graph == null || engine == null) throw new NullPointerException("The graph and the betweenness engine must not be null");
+        this.graph = graph;
+        this.engine = engine;
+        this.components = new ArrayList<>();
+        addComponents(CsrGraph.of(graph));
+    }
+
+    /**
+     * @return A new Edge object with the IDs of the edge with the highest score, or null if no edge has a positive score;
+     * ties are broken by the order in which the components were scored, then by edge number within the component
+     */
+    public Edge getHighestScoringEdge() {
+        Component best = null;
+        for (Component component : this.components) {
+            if (component.bestEdge >= 0 && (best == null || component.bestScore > best.bestScore)) best = component;
+        }
+        if (best == null) return null;
+
+        CsrGraph snapshot = best.snapshot;
+        return new Edge(snapshot.idAt(best.bestSource), snapshot.idAt(snapshot.targetAt(best.bestEdge)));
+    }
+
+    /**
+     * Must be called after deleting edges of the graph, with a node of the component they belonged to; that component
+     * is split into its current weakly connected components and only those are scored again
+     * @param id ID of a node of the component that changed
+     */
+    public void componentChanged(int id) {
+        for (int i = 0; i < this.components.size(); i++) {
+            CsrGraph snapshot = this.components.get(i).snapshot;
+            if (snapshot.indexOf(id) < 0) continue;
+
+            int[] ids = new int[snapshot.getSize()];
+            for (int j = 0; j < ids.length; j++) ids[j] = snapshot.idAt(j);
+            this.components.remove(i);
+            addComponents(CsrGraph.of(this.graph, ids));
+            return;
+        }
+    }
+
+    /**
+     * @return The current score of the edge, or zero if there is no such edge (or it was deleted and its component has
+     * already been scored again)
+     */
+    public double getScore(int from, int to) {
+        for (Component component : this.components) {
+            CsrGraph snapshot = component.snapshot;
+            int fromIndex = snapshot.indexOf(from);
+            if (fromIndex < 0) continue;
+            int toIndex = snapshot.indexOf(to);
+            int edge = toIndex < 0 ? -1 : snapshot.edgeIndexOf(fromIndex, toIndex);
+            return edge < 0 ? 0.0 : component.scores[edge];
+        }
+        return 0.0;
+    }
+
+    /**
+     * @return The amount of components with at least one edge
+     */
+    public int getComponentAmount() {
+        return this.components.size();
+    }
+
+    /**
+     * Splits a snapshot into its weakly connected components (union-find over its edges, so the direction of the
+     * edges doesn't matter and no transposed graph is needed) and scores each one of them
+     */
+    private void addComponents(CsrGraph snapshot) {
+        int n = snapshot.getSize();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+
+        for (int node = 0; node < n; node++) {
+            for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                int a = find(parent, node);
+                int b = find(parent, snapshot.targetAt(e));
+                if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+
+        // Every root is the lowest index of its component, so components come out ordered by their lowest ID
+        int[] componentOf = new int[n];
+        int[] sizes = new int[n];
+        int amount = 0;
+        for (int node = 0; node < n; node++) {
+            int root = find(parent, node);
+            componentOf[node] = root == node ? amount++ : componentOf[root];
+            sizes[componentOf[node]]++;
+        }
+
+        if (amount == 1) {
+            addComponent(snapshot);
+            return;
+        }
+
+        int[][] members = new int[amount][];
+        for (int c = 0; c < amount; c++) members[c] = new int[sizes[c]];
+        int[] filled = new int[amount];
+        for (int node = 0; node < n; node++) {
+            int c = componentOf[node];
+            members[c][filled[c]++] = snapshot.idAt(node);
+        }
+
+        for (int c = 0; c < amount; c++) {
+            if (members[c].length > 1) addComponent(CsrGraph.of(snapshot, members[c]));
+        }
+    }
+
+    private void addComponent(CsrGraph snapshot) {
+        if (snapshot.getEdgeAmount() == 0) return;
+        this.components.add(new Component(snapshot, this.engine.edgeScores(snapshot)));
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Snapshot of one component with its scores, and its highest scoring edge already located
+     */
+    private static final class Component {
+        private final CsrGraph snapshot;
+        private final double[] scores;
+        private int bestSource = -1;
+        private int bestEdge = -1;
+        private double bestScore = 0.0;
+
+        private Component(CsrGraph snapshot, double[] scores) {
+            this.snapshot = snapshot;
+            this.scores = scores;
+
+            for (int node = 0; node < snapshot.getSize(); node++) {
+                for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                    if (scores[e] > this.bestScore) {
+                        this.bestScore = scores[e];
+                        this.bestSource = node;
+                        this.bestEdge = e;
+                    }
+                }
+            }
+        }
+    }
+}
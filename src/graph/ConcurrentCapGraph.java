@@ -0,0 +1,370 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * A Graph that any amount of threads can read and write at the same time, so edges can be ingested from several
+ * streams while queries are served. Nodes live in a ConcurrentHashMap. The neighbours of each node are kept in an
+ * append-only segmented array, where segment k holds 4 * 2^k IDs, so growing never copies or moves what readers
+ * may be looking at; past 8 neighbours an insert-only hash table of their positions is kept next to it, so looking
+ * one up doesn't scan them. Writers of a node take its monitor, so writers of different nodes never wait for each
+ * other. Readers take no lock: they read the published length first, and everything below it is already visible.
+ * getNeighbourView returns a view of that prefix, which stays the same however many edges are appended afterwards,
+ * and containsEdge probes the table (or scans the prefix) of the neighbours published when it was called.
+ * Deleting an edge copies the node's remaining neighbours into a new array and publishes it, so views taken before
+ * keep the old, still consistent, neighbours.
+ * Every single operation is atomic, but there is no snapshot of the whole graph: freeze, getSCCs, exportGraph and
+ * the like see each node as it was when they reached it
+ */
+
+public class ConcurrentCapGraph implements Graph {
+    private final ConcurrentHashMap<Integer, ConcurrentNode> nodes;
+    private final LongAdder edgeAmount = new LongAdder();
+
+    public ConcurrentCapGraph() {
+        this.nodes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param expectedSize Amount of nodes to size the node map for
+     */
+    public ConcurrentCapGraph(int expectedSize) {
+        this.nodes = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    /**
+     * @param graph Graph whose nodes and edges are copied
+     */
+    public ConcurrentCapGraph(Graph graph) {
+        this(graph.getSize());
+        for (int id : graph.getNodes()) addVertex(id);
+        for (int id : graph.getNodes()) {
+            NeighbourView neighbours = graph.getNode(id).getNeighbourView();
+            for (int i = 0; i < neighbours.size(); i++) addEdge(id, neighbours.get(i));
+        }
+    }
+
+    @Override
+    public boolean addVertex(int id) {
+        if (this.nodes.containsKey(id)) return false;
+        return this.nodes.putIfAbsent(id, new ConcurrentNode(id, this.edgeAmount)) == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException If there is no node with the ID the edge begins at
+     */
+    @Override
+    public void addEdge(int from, int to) {
+        existingNode(from).add(to);
+    }
+
+    @Override
+    public void addEdge(Edge edge) {
+        if (edge == null) throw new NullPointerException("Attempted to add an edge pointing to a null value.");
+        addEdge(edge.getFrom(), edge.getTo());
+    }
+
+    @Override
+    public boolean deleteEdge(Edge edge) {
+        if (edge == null) throw new NullPointerException("Attempted to delete an edge pointing to a null value.");
+        ConcurrentNode node = this.nodes.get(edge.getFrom());
+        return node != null && node.remove(edge.getTo());
+    }
+
+    @Override
+    public boolean containsEdge(Edge edge) {
+        if (edge == null) return false;
+        ConcurrentNode node = this.nodes.get(edge.getFrom());
+        return node != null && node.hasNeighbour(edge.getTo());
+    }
+
+    /**
+     * @return The egonet as it was when each of its nodes was read, in a new CapGraph; empty if the center isn't in
+     * the graph
+     */
+    @Override
+    public Graph getEgonet(int center) {
+        CapGraph egonet = new CapGraph();
+        ConcurrentNode centerNode = this.nodes.get(center);
+        if (centerNode == null) return egonet;
+
+        egonet.addVertex(center);
+        NeighbourView centerNeighbours = centerNode.getNeighbourView();
+        IntHashSet members = new IntHashSet(centerNeighbours.size());
+        for (int i = 0; i < centerNeighbours.size(); i++) members.add(centerNeighbours.get(i));
+
+        for (int i = 0; i < centerNeighbours.size(); i++) {
+            int node = centerNeighbours.get(i);
+            egonet.addVertex(node);
+            egonet.addEdge(center, node);
+
+            ConcurrentNode neighbour = this.nodes.get(node);
+            if (neighbour == null) continue;
+            NeighbourView nodeNeighbours = neighbour.getNeighbourView();
+            for (int j = 0; j < nodeNeighbours.size(); j++) {
+                if (members.contains(nodeNeighbours.get(j))) egonet.addEdge(node, nodeNeighbours.get(j));
+            }
+        }
+        return egonet;
+    }
+
+    @Override
+    public List<Graph> getSCCs() {
+        return new SCC(this).getSCCs();
+    }
+
+    @Override
+    public Graph transposeGraph() {
+        ConcurrentCapGraph transposed = new ConcurrentCapGraph(getSize());
+        for (int id : this.nodes.keySet()) transposed.addVertex(id);
+        this.nodes.forEach((id, node) -> {
+            NeighbourView neighbours = node.getNeighbourView();
+            for (int i = 0; i < neighbours.size(); i++) {
+                transposed.addVertex(neighbours.get(i));
+                transposed.addEdge(neighbours.get(i), id);
+            }
+        });
+        return transposed;
+    }
+
+    /**
+     * @return A CSR snapshot of the graph, with each node as it was when it was read
+     */
+    public CsrGraph freeze() {
+        return CsrGraph.of(this);
+    }
+
+    @Override
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        HashMap<Integer, HashSet<Integer>> mapToExport = new HashMap<>();
+        this.nodes.forEach((id, node) -> mapToExport.put(id, (HashSet<Integer>) node.getNeighbours()));
+        return mapToExport;
+    }
+
+    @Override
+    public Set<Integer> getNodes() {
+        return new HashSet<>(this.nodes.keySet());
+    }
+
+    @Override
+    public ConcurrentNode getNode(int id) {
+        return this.nodes.get(id);
+    }
+
+    @Override
+    public boolean containsNode(int id) {
+        return this.nodes.containsKey(id);
+    }
+
+    @Override
+    public int getEdgeAmount() {
+        return (int) this.edgeAmount.sum();
+    }
+
+    @Override
+    public int getSize() {
+        return this.nodes.size();
+    }
+
+    private ConcurrentNode existingNode(int id) {
+        ConcurrentNode node = this.nodes.get(id);
+        if (node == null) throw new IllegalArgumentException("There is no node with ID " + id + " in the graph");
+        return node;
+    }
+
+    /**
+     * A node of a ConcurrentCapGraph; see the class comment for how its neighbours are kept
+     */
+    public static final class ConcurrentNode implements Node {
+        private static final int FIRST_SEGMENT = 4;
+        // Up to this many neighbours they are scanned, and no table is built
+        private static final int SCAN_LIMIT = 8;
+
+        private final int id;
+        private final LongAdder edgeAmount;
+        private volatile Adjacency adjacency = new Adjacency();
+
+        private ConcurrentNode(int id, LongAdder edgeAmount) {
+            this.id = id;
+            this.edgeAmount = edgeAmount;
+        }
+
+        @Override
+        public int getId() {
+            return this.id;
+        }
+
+        @Override
+        public boolean addNeighbour(Edge edge) {
+            return add(edge.getTo());
+        }
+
+        synchronized boolean add(int neighbour) {
+            Adjacency current = this.adjacency;
+            if (current.contains(neighbour)) return false;
+            current.append(neighbour);
+            this.edgeAmount.increment();
+            return true;
+        }
+
+        synchronized boolean remove(int neighbour) {
+            Adjacency current = this.adjacency;
+            if (!current.contains(neighbour)) return false;
+            Adjacency replacement = new Adjacency();
+            int length = current.length;
+            for (int position = 0; position < length; position++) {
+                int value = current.get(position);
+                if (value != neighbour) replacement.append(value);
+            }
+            this.adjacency = replacement;
+            this.edgeAmount.decrement();
+            return true;
+        }
+
+        /**
+         * Takes no lock, so it never waits for the writers of the node
+         */
+        public boolean hasNeighbour(int neighbour) {
+            return this.adjacency.contains(neighbour);
+        }
+
+        @Override
+        public Set<Integer> getNeighbours() {
+            NeighbourView view = getNeighbourView();
+            Set<Integer> neighbours = new HashSet<>();
+            for (int i = 0; i < view.size(); i++) neighbours.add(view.get(i));
+            return neighbours;
+        }
+
+        /**
+         * @return The neighbours the node had when this was called, unaffected by later changes; contains scans them
+         */
+        @Override
+        public NeighbourView getNeighbourView() {
+            Adjacency current = this.adjacency;
+            int length = current.length;
+            return new PrefixView(current.segments, length);
+        }
+    }
+
+    /**
+     * Segmented array of neighbour IDs. Only the writer holding the node's monitor appends, writing the value (and
+     * its entry in the table) before publishing the new length, so a reader that read the length first sees every
+     * value below it. The spine (the array of segments) is replaced when a segment is added, and the table when it
+     * is half full, both before the length that needs them is written. Table slots only ever go from empty to taken,
+     * so a reader probing while an entry is added still finds every entry published before it started; entries of
+     * positions past the length it read are skipped
+     */
+    private static final class Adjacency {
+        private volatile int[][] segments = new int[0][];
+        // Position + 1 of each neighbour, by hash of its ID, with 0 for empty slots; null up to SCAN_LIMIT neighbours
+        private volatile int[] table;
+        private volatile int length;
+
+        private void append(int value) {
+            int position = this.length;
+            int segment = segmentOf(position);
+            int[][] spine = this.segments;
+            if (segment == spine.length) {
+                spine = Arrays.copyOf(spine, segment + 1);
+                spine[segment] = new int[ConcurrentNode.FIRST_SEGMENT << segment];
+                this.segments = spine;
+            }
+            spine[segment][offsetIn(segment, position)] = value;
+
+            int[] positions = this.table;
+            if (positions != null && 2 * (position + 1) <= positions.length) insert(positions, value, position);
+            else if (positions != null || position + 1 > ConcurrentNode.SCAN_LIMIT) this.table = buildTable(position + 1);
+            this.length = position + 1;
+        }
+
+        private boolean contains(int value) {
+            int published = this.length;
+            int[][] spine = this.segments;
+            int[] positions = this.table;
+
+            if (positions == null) {
+                for (int position = 0; position < published; position++) if (valueAt(spine, position) == value) return true;
+                return false;
+            }
+
+            int mask = positions.length - 1;
+            for (int slot = hash(value) & mask, entry; (entry = positions[slot]) != 0; slot = (slot + 1) & mask) {
+                if (entry <= published && valueAt(spine, entry - 1) == value) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return A table with room for four times the given amount of neighbours, holding the first ones
+         */
+        private int[] buildTable(int amount) {
+            int[] positions = new int[Integer.highestOneBit(4 * amount - 1) << 1];
+            for (int position = 0; position < amount; position++) insert(positions, get(position), position);
+            return positions;
+        }
+
+        private static void insert(int[] positions, int value, int position) {
+            int mask = positions.length - 1;
+            int slot = hash(value) & mask;
+            while (positions[slot] != 0) slot = (slot + 1) & mask;
+            positions[slot] = position + 1;
+        }
+
+        private static int hash(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int get(int position) {
+            return valueAt(this.segments, position);
+        }
+    }
+
+    private static int valueAt(int[][] segments, int position) {
+        int segment = segmentOf(position);
+        return segments[segment][offsetIn(segment, position)];
+    }
+
+    /**
+     * Segment k starts at position 4 * (2^k - 1)
+     */
+    private static int segmentOf(int position) {
+        return 31 - Integer.numberOfLeadingZeros(position / ConcurrentNode.FIRST_SEGMENT + 1);
+    }
+
+    private static int offsetIn(int segment, int position) {
+        return position - ConcurrentNode.FIRST_SEGMENT * ((1 << segment) - 1);
+    }
+
+    private static final class PrefixView implements NeighbourView {
+        private final int[][] segments;
+        private final int size;
+
+        private PrefixView(int[][] segments, int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public int get(int position) {
+            if (position >= this.size) throw new IndexOutOfBoundsException("Position " + position + " of " + this.size + " neighbours");
+            return valueAt(this.segments, position);
+        }
+
+        @Override
+        public boolean contains(int id) {
+            for (int position = 0; position < this.size; position++) if (get(position) == id) return true;
+            return false;
+        }
+    }
+}
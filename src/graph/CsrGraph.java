@@ -0,0 +1,452 @@
+package graph;
+
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
+import java.util.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Immutable compressed-sparse-row (CSR) snapshot of a graph, meant for the read-heavy algorithms (SCCs, egonets,
+ * second level friends, betweenness) that never modify the graph they run on.
+ * Node IDs are mapped to dense indices 0..n-1 in ascending order of ID; the neighbours of the node with index i are
+ * targets[offsets[i]] up to targets[offsets[i+1] - 1], stored as dense indices and sorted in ascending order.
+ * That is two int arrays for the whole adjacency instead of two hash sets of boxed values per node.
+ * Where those arrays live is up to the subclass: on the heap (the snapshots built by of/fromEdges), in a mapped file
+ * (MappedCsrGraph) or in direct buffers (OffHeapCsrGraph); every query here goes through idAt, edgeStart, edgeEnd and
+ * targetAt, so it works the same on all of them.
+ * Every method that would modify the graph throws an UnsupportedOperationException
+ */
+
+public abstract class CsrGraph implements Graph {
+
+    CsrGraph() {
+    }
+
+    /**
+     * Builds the snapshot out of any graph; edges pointing to an ID that isn't a vertex of the graph (as the ones
+     * kept in the sub-graphs returned by getSCCs) are dropped, since they have no dense index to point to
+     * @param graph The graph to take the snapshot of
+     * @return The graph itself if it already is a CsrGraph, a new immutable snapshot of it otherwise
+     */
+    public static CsrGraph of(Graph graph) {
+        if (graph == null) throw new NullPointerException("Attempted to take a snapshot of a null graph.");
+        if (graph instanceof CsrGraph) return (CsrGraph) graph;
+        if (graph instanceof CapGraph) return ((CapGraph) graph).freeze();
+        return of(graph, graph.getNodes().stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Builds the snapshot of the sub-graph induced by some of the nodes of a graph: only the edges between two of
+     * those nodes are kept
+     * @param graph The graph to take the snapshot of
+     * @param nodeIds IDs of the nodes to keep, in any order; the array isn't modified
+     * @return A new immutable snapshot of the induced sub-graph
+     */
+    public static CsrGraph of(Graph graph, int[] nodeIds) {
+        if (graph == null) throw new NullPointerException("Attempted to take a snapshot of a null graph.");
+
+        int[] ids = nodeIds.clone();
+        Arrays.sort(ids);
+        int[] offsets = new int[ids.length + 1];
+        NeighbourView[] views = new NeighbourView[ids.length];
+        int capacity = 0;
+        for (int i = 0; i < ids.length; i++) {
+            views[i] = graph.getNode(ids[i]).getNeighbourView();
+            capacity += views[i].size();
+        }
+
+        int[] targets = new int[capacity];
+        int edge = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            offsets[i] = edge;
+            NeighbourView neighbours = views[i];
+            for (int j = 0; j < neighbours.size(); j++) {
+                int index = Arrays.binarySearch(ids, neighbours.get(j));
+                if (index >= 0) targets[edge++] = index;
+            }
+            Arrays.sort(targets, offsets[i], edge);
+        }
+        offsets[ids.length] = edge;
+
+        return new HeapCsrGraph(ids, offsets, edge == targets.length ? targets : Arrays.copyOf(targets, edge));
+    }
+
+    /**
+     * Builds the snapshot straight from an edge list, without going through a CapGraph; every ID found in the list
+     * becomes a node, and repeated edges are kept once
+     * @param from IDs where each edge begins
+     * @param to IDs each edge points towards
+     * @param count Amount of edges, the first count entries of both arrays
+     * @return A new immutable snapshot
+     */
+    public static CsrGraph fromEdges(int[] from, int[] to, int count) {
+        int[] ids = new int[2 * count];
+        System.arraycopy(from, 0, ids, 0, count);
+        System.arraycopy(to, 0, ids, count, count);
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) ids[n++] = ids[i];
+        }
+        ids = Arrays.copyOf(ids, n);
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < count; i++) offsets[Arrays.binarySearch(ids, from[i]) + 1]++;
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+
+        int[] targets = new int[count];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < count; i++) targets[next[Arrays.binarySearch(ids, from[i])]++] = Arrays.binarySearch(ids, to[i]);
+
+        // Rows are sorted and repeated edges dropped, compacting the targets in place
+        int edge = 0;
+        for (int node = 0; node < n; node++) {
+            int start = offsets[node];
+            int end = offsets[node + 1];
+            offsets[node] = edge;
+            Arrays.sort(targets, start, end);
+            for (int i = start; i < end; i++) {
+                if (edge == offsets[node] || targets[edge - 1] != targets[i]) targets[edge++] = targets[i];
+            }
+        }
+        offsets[n] = edge;
+
+        return new HeapCsrGraph(ids, offsets, edge == count ? targets : Arrays.copyOf(targets, edge));
+    }
+
+    /**
+     * @param id ID of the node
+     * @return Its dense index, or -1 if there is no such node in the graph
+     */
+    public int indexOf(int id) {
+        int low = 0;
+        int high = getSize() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = idAt(middle);
+            if (middleId < id) low = middle + 1;
+            else if (middleId > id) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    public abstract int idAt(int index);
+
+    public int degreeAt(int index) {
+        return edgeEnd(index) - edgeStart(index);
+    }
+
+    /**
+     * The outgoing edges of a node are numbered edgeStart(index) up to edgeEnd(index) - 1, and those numbers are
+     * stable for the lifetime of the snapshot, so they can be used to index per-edge arrays
+     */
+    public abstract int edgeStart(int index);
+
+    public abstract int edgeEnd(int index);
+
+    /**
+     * @param edge Number of the edge, as given by edgeStart/edgeEnd
+     * @return Dense index of the node the edge points towards
+     */
+    public abstract int targetAt(int edge);
+
+    /**
+     * @return The number of the edge going from one dense index to the other, or -1 if there is no such edge
+     */
+    public int edgeIndexOf(int fromIndex, int toIndex) {
+        return searchTargets(edgeStart(fromIndex), edgeEnd(fromIndex), toIndex);
+    }
+
+    /**
+     * Binary search among the edges from up to to - 1, which is a sorted stretch when it is part of a single row
+     * @return The number of the edge pointing to target, or -1 if there is none
+     */
+    int searchTargets(int from, int to, int target) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleTarget = targetAt(middle);
+            if (middleTarget < target) low = middle + 1;
+            else if (middleTarget > target) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Every ID in order of dense index; the subclasses already keeping such an array may hand out that very
+     * array, so it mustn't be modified
+     */
+    int[] ids() {
+        int[] ids = new int[getSize()];
+        for (int i = 0; i < ids.length; i++) ids[i] = idAt(i);
+        return ids;
+    }
+
+    @Override
+    public boolean addVertex(int num) {
+        throw new UnsupportedOperationException("CsrGraph snapshots are immutable; modify the original graph and freeze it again.");
+    }
+
+    @Override
+    public void addEdge(int from, int to) {
+        throw new UnsupportedOperationException("CsrGraph snapshots are immutable; modify the original graph and freeze it again.");
+    }
+
+    @Override
+    public void addEdge(Edge edge) {
+        throw new UnsupportedOperationException("CsrGraph snapshots are immutable; modify the original graph and freeze it again.");
+    }
+
+    @Override
+    public boolean deleteEdge(Edge edge) {
+        throw new UnsupportedOperationException("CsrGraph snapshots are immutable; modify the original graph and freeze it again.");
+    }
+
+    /**
+     * {@inheritDoc}
+     * Since both neighbour lists are sorted, the edges among the center's neighbours are found by merging each
+     * neighbour's list with the center's one instead of looking every single neighbour up in a set
+     * @param center The node/user at the center of the desired egonet
+     * @return A mutable CapGraph with the egonet, which is empty if the center isn't in the graph
+     */
+    @Override
+    public Graph getEgonet(int center) {
+        GraphMetrics metrics = Metrics.current();
+        long start = metrics == null ? 0L : System.nanoTime();
+        Graph egonet = buildEgonet(center);
+        if (metrics != null) metrics.egonetExtracted(center, egonet.getSize(), System.nanoTime() - start);
+        return egonet;
+    }
+
+    private Graph buildEgonet(int center) {
+        CapGraph egonet = new CapGraph();
+        int centerIndex = indexOf(center);
+        if (centerIndex < 0) return egonet;
+
+        int centerStart = edgeStart(centerIndex);
+        int centerEnd = edgeEnd(centerIndex);
+
+        egonet.addVertex(center);
+        for (int e = centerStart; e < centerEnd; e++) egonet.addVertex(idAt(targetAt(e)));
+
+        for (int e = centerStart; e < centerEnd; e++) {
+            int node = targetAt(e);
+            egonet.addEdge(center, idAt(node));
+
+            int i = edgeStart(node);
+            int nodeEnd = edgeEnd(node);
+            int j = centerStart;
+            while (i < nodeEnd && j < centerEnd) {
+                int fromNode = targetAt(i);
+                int fromCenter = targetAt(j);
+                if (fromNode < fromCenter) i++;
+                else if (fromNode > fromCenter) j++;
+                else {
+                    egonet.addEdge(idAt(node), idAt(fromNode));
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return egonet;
+    }
+
+    @Override
+    public List<Graph> getSCCs() {
+        return new SCC(this).getSCCs();
+    }
+
+    /**
+     * @return The transposed snapshot, built with a counting sort over the targets so rows stay sorted
+     */
+    @Override
+    public Graph transposeGraph() {
+        int n = getSize();
+        int[] transposedOffsets = new int[n + 1];
+        int[] transposedTargets = new int[getEdgeAmount()];
+
+        for (int e = 0; e < transposedTargets.length; e++) transposedOffsets[targetAt(e) + 1]++;
+        for (int i = 0; i < n; i++) transposedOffsets[i + 1] += transposedOffsets[i];
+
+        int[] next = Arrays.copyOf(transposedOffsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int e = edgeStart(i); e < edgeEnd(i); e++) {
+                transposedTargets[next[targetAt(e)]++] = i;
+            }
+        }
+
+        return new HeapCsrGraph(ids(), transposedOffsets, transposedTargets);
+    }
+
+    /**
+     * For the algorithms that ignore the direction of the edges (label propagation, triangles, ...)
+     * @return A snapshot with the same dense indices where each node points to every node it is connected to in
+     * either direction, once, and self loops are dropped
+     */
+    public CsrGraph toUndirected() {
+        int n = getSize();
+        int[] bothOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            for (int e = edgeStart(node); e < edgeEnd(node); e++) {
+                if (targetAt(e) == node) continue;
+                bothOffsets[node + 1]++;
+                bothOffsets[targetAt(e) + 1]++;
+            }
+        }
+        for (int node = 0; node < n; node++) bothOffsets[node + 1] += bothOffsets[node];
+
+        int[] both = new int[bothOffsets[n]];
+        int[] next = Arrays.copyOf(bothOffsets, n);
+        for (int node = 0; node < n; node++) {
+            for (int e = edgeStart(node); e < edgeEnd(node); e++) {
+                int neighbour = targetAt(e);
+                if (neighbour == node) continue;
+                both[next[node]++] = neighbour;
+                both[next[neighbour]++] = node;
+            }
+        }
+
+        // Each row is sorted and the reciprocal edges, which appear twice, are merged in place
+        int[] undirectedOffsets = new int[n + 1];
+        int edge = 0;
+        for (int node = 0; node < n; node++) {
+            undirectedOffsets[node] = edge;
+            Arrays.sort(both, bothOffsets[node], bothOffsets[node + 1]);
+            for (int i = bothOffsets[node]; i < bothOffsets[node + 1]; i++) {
+                if (edge == undirectedOffsets[node] || both[edge - 1] != both[i]) both[edge++] = both[i];
+            }
+        }
+        undirectedOffsets[n] = edge;
+
+        return new HeapCsrGraph(ids(), undirectedOffsets, Arrays.copyOf(both, edge));
+    }
+
+    /**
+     * Same semantics as CapGraph's version: friends of friends, without the direct friends nor the user itself
+     * @param id of the user of which the second level friends are to be returned
+     * @return A set of IDs corresponding to the friends of friends of the ID passed as a parameter
+     */
+    public Set<Integer> get2ndLevelFriends(int id) {
+        Set<Integer> secondLevelFriends = new HashSet<>();
+        int index = indexOf(id);
+        if (index < 0) return secondLevelFriends;
+
+        int start = edgeStart(index);
+        int end = edgeEnd(index);
+
+        for (int e = start; e < end; e++) {
+            int neighbour = targetAt(e);
+            for (int f = edgeStart(neighbour); f < edgeEnd(neighbour); f++) {
+                int candidate = targetAt(f);
+                if (candidate != index && searchTargets(start, end, candidate) < 0) {
+                    secondLevelFriends.add(idAt(candidate));
+                }
+            }
+        }
+
+        return secondLevelFriends;
+    }
+
+    @Override
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        HashMap<Integer, HashSet<Integer>> mapToExport = new HashMap<>();
+        for (int i = 0; i < getSize(); i++) mapToExport.put(idAt(i), neighbourIDs(i));
+        return mapToExport;
+    }
+
+    @Override
+    public Set<Integer> getNodes() {
+        Set<Integer> nodes = new HashSet<>();
+        for (int i = 0; i < getSize(); i++) nodes.add(idAt(i));
+        return nodes;
+    }
+
+    /**
+     * The snapshot doesn't keep node objects around, so a read-only view is created on each call
+     * @param id ID of the node to return
+     * @return A read-only node, or null if there is no such node (as CapGraph does)
+     */
+    @Override
+    public Node getNode(int id) {
+        int index = indexOf(id);
+        return index < 0 ? null : new CsrNode(index);
+    }
+
+    @Override
+    public boolean containsNode(int id) {
+        return indexOf(id) >= 0;
+    }
+
+    @Override
+    public boolean containsEdge(Edge edge) {
+        if (edge == null) return false;
+        int from = indexOf(edge.getFrom());
+        int to = indexOf(edge.getTo());
+        return from >= 0 && to >= 0 && edgeIndexOf(from, to) >= 0;
+    }
+
+    @Override
+    public abstract int getEdgeAmount();
+
+    @Override
+    public abstract int getSize();
+
+    private HashSet<Integer> neighbourIDs(int index) {
+        HashSet<Integer> neighbours = new HashSet<>();
+        for (int e = edgeStart(index); e < edgeEnd(index); e++) neighbours.add(idAt(targetAt(e)));
+        return neighbours;
+    }
+
+    /**
+     * Read-only node handed out by getNode, backed by the snapshot's arrays; it is its own neighbour view
+     */
+    private class CsrNode implements Node, NeighbourView {
+        private final int index;
+
+        private CsrNode(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int getId() {
+            return idAt(this.index);
+        }
+
+        @Override
+        public boolean addNeighbour(Edge edge) {
+            throw new UnsupportedOperationException("CsrGraph snapshots are immutable; modify the original graph and freeze it again.");
+        }
+
+        @Override
+        public Set<Integer> getNeighbours() {
+            return neighbourIDs(this.index);
+        }
+
+        @Override
+        public NeighbourView getNeighbourView() {
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return degreeAt(this.index);
+        }
+
+        @Override
+        public int get(int position) {
+            return idAt(targetAt(edgeStart(this.index) + position));
+        }
+
+        @Override
+        public boolean contains(int id) {
+            int neighbour = indexOf(id);
+            return neighbour >= 0 && edgeIndexOf(this.index, neighbour) >= 0;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package graph;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Brandes's algorithm spread over worker processes, so a Girvan-Newman run isn't capped by the cores of one JVM.
+ * The first call starts the workers (BetweennessWorker, with the classpath of this JVM), which connect back to a
+ * loopback socket and are kept for every later call until close. For each graph the snapshot is written once in
+ * the binary format of MappedCsrGraph and streamed to every worker, then the sources are split in ranges aligned to
+ * the chunks of BrandesBetweenness that the workers take from a shared queue, a few per worker so the faster ones
+ * take more. Each range comes back as a partial vector, and the partials are added in range order, so the scores
+ * don't depend on which worker did what (they can differ from the single-process ones in the last bits, since the
+ * additions are grouped differently).
+ * A worker that fails, closes its connection or doesn't answer within the timeout is dropped and its range goes back
+ * to the queue; ranges nobody is left to take are computed by the calling thread. Small graphs, and graphs passed
+ * once every worker has failed, are scored in this process. Sampling engines (withSampling, withErrorBound) are
+ * plain BrandesBetweenness ones and always run here
+ */
+
+public class DistributedBetweenness extends BrandesBetweenness implements AutoCloseable {
+    static final int MAGIC = 0x42524E44;
+    static final int GRAPH = 1;
+    static final int RANGE = 2;
+    static final int SCORES = 3;
+    static final int SHUTDOWN = 4;
+    static final int DOUBLES_PER_BLOCK = 1 << 13;
+
+    private static final int RANGES_PER_WORKER = 4;
+    // Below this many sources the round trips cost more than the searches
+    private static final int MIN_DISTRIBUTED_SOURCES = 4 * SOURCES_PER_CHUNK;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30 * 1000;
+
+    private final int workerAmount;
+    private final long timeoutMillis;
+    private final List<String> workerArguments;
+    private Worker[] workers;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * @param workers Amount of worker processes to start on this machine
+     */
+    public DistributedBetweenness(int workers) {
+        this(workers, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis How long a worker may take to answer a single range before it is taken as failed
+     */
+    public DistributedBetweenness(int workers, long timeoutMillis) {
+        this(workers, timeoutMillis, Collections.emptyList());
+    }
+
+    /**
+     * @param workerArguments Extra arguments for every worker, after the ones this class passes
+     */
+    DistributedBetweenness(int workers, long timeoutMillis, List<String> workerArguments) {
+        super(1);
+        if (workers < 1) throw new IllegalArgumentException("There must be at least one worker, got " + workers);
+        if (timeoutMillis < 1 || timeoutMillis > Integer.MAX_VALUE) throw new IllegalArgumentException("The timeout must be between 1 and " + Integer.MAX_VALUE + " milliseconds, got " + timeoutMillis);
+        this.workerAmount = workers;
+        this.timeoutMillis = timeoutMillis;
+        this.workerArguments = new ArrayList<>(workerArguments);
+    }
+
+    @Override
+    public int getParallelism() {
+        return this.workerAmount;
+    }
+
+    /**
+     * @return The amount of workers still in use; zero before the first distributed call
+     */
+    public synchronized int getAliveWorkers() {
+        if (this.workers == null) return 0;
+        int alive = 0;
+        for (Worker worker : this.workers) if (worker.isAlive()) alive++;
+        return alive;
+    }
+
+    /**
+     * @return The amount of workers dropped so far, whether they never connected or failed later on
+     */
+    public int getFailures() {
+        return this.failures.get();
+    }
+
+    @Override
+    public synchronized double[] edgeScores(CsrGraph graph) {
+        if (graph == null) throw new NullPointerException("The argument passed to this function points to a null value");
+
+        int n = graph.getSize();
+        int m = graph.getEdgeAmount();
+        if (n < MIN_DISTRIBUTED_SOURCES) return super.edgeScores(graph);
+        if (this.workers == null) startWorkers();
+
+        List<Worker> alive = new ArrayList<>();
+        for (Worker worker : this.workers) if (worker.isAlive()) alive.add(worker);
+
+        int chunks = (n + SOURCES_PER_CHUNK - 1) / SOURCES_PER_CHUNK;
+        int chunksPerRange = (chunks + RANGES_PER_WORKER * Math.max(1, alive.size()) - 1) / (RANGES_PER_WORKER * Math.max(1, alive.size()));
+        int rangeSize = chunksPerRange * SOURCES_PER_CHUNK;
+        int rangeAmount = (n + rangeSize - 1) / rangeSize;
+        double[][] partials = new double[rangeAmount][];
+
+        if (!alive.isEmpty()) scoreRanges(graph, alive, rangeSize, partials);
+
+        // Ranges left by workers that failed once the others were done, or every range if none is left
+        double[] scores = new double[m];
+        for (int range = 0; range < rangeAmount; range++) {
+            if (partials[range] == null) {
+                partials[range] = new double[m];
+                accumulate(graph, range * rangeSize, Math.min(n, (range + 1) * rangeSize), partials[range]);
+            }
+            for (int e = 0; e < m; e++) scores[e] += partials[range][e];
+        }
+        return scores;
+    }
+
+    private void scoreRanges(CsrGraph graph, List<Worker> alive, int rangeSize, double[][] partials) {
+        Path snapshot;
+        try {
+            snapshot = Files.createTempFile("betweenness", ".csr");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        ExecutorService pool = Parallel.daemonPool("betweenness-coordinator", alive.size());
+        try {
+            if (!MappedCsrGraph.write(graph, snapshot.toString())) return;
+
+            ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+            for (int range = 0; range < partials.length; range++) pending.add(range);
+
+            List<Future<?>> futures = new ArrayList<>(alive.size());
+            for (Worker worker : alive) {
+                futures.add(pool.submit(measured(() -> serve(worker, snapshot, graph, rangeSize, pending, partials))));
+            }
+            Parallel.await(futures, "waiting for the betweenness workers");
+        }
+        finally {
+            pool.shutdownNow();
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Sends the snapshot to the worker and then hands it ranges until the queue is empty or the worker fails
+     */
+    private void serve(Worker worker, Path snapshot, CsrGraph graph, int rangeSize, ConcurrentLinkedQueue<Integer> pending,
+                       double[][] partials) {
+        Integer range = null;
+        try {
+            worker.sendGraph(snapshot);
+            while ((range = pending.poll()) != null) {
+                int from = range * rangeSize;
+                partials[range] = worker.score(from, Math.min(graph.getSize(), from + rangeSize), graph.getEdgeAmount());
+                range = null;
+            }
+        } catch (IOException e) {
+            if (range != null) pending.add(range);
+            System.err.println("Betweenness worker " + worker.number + " failed: " + e);
+            dropWorker(worker);
+        }
+    }
+
+    /**
+     * Called by the thread serving the worker, so it can't wait for the monitor edgeScores holds
+     */
+    private void dropWorker(Worker worker) {
+        if (!worker.isAlive()) return;
+        worker.destroy();
+        this.failures.incrementAndGet();
+    }
+
+    private void startWorkers() {
+        this.workers = new Worker[this.workerAmount];
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        try (ServerSocket server = new ServerSocket(0, this.workerAmount, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < this.workerAmount; i++) {
+                List<String> command = new ArrayList<>();
+                Collections.addAll(command, java, "-cp", System.getProperty("java.class.path"), BetweennessWorker.class.getName(),
+                        server.getInetAddress().getHostAddress(), Integer.toString(server.getLocalPort()), Integer.toString(i));
+                command.addAll(this.workerArguments);
+                this.workers[i] = new Worker(i, new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (int connected = 0; connected < this.workerAmount; connected++) {
+                Socket socket = server.accept();
+                socket.setSoTimeout((int) this.timeoutMillis);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int number = in.readInt() == MAGIC ? in.readInt() : -1;
+                if (number < 0 || number >= this.workerAmount || this.workers[number].socket != null) {
+                    socket.close();
+                    connected--;
+                    continue;
+                }
+                this.workers[number].connect(socket, in);
+            }
+        } catch (SocketTimeoutException e) {
+            System.err.println("Not every betweenness worker connected within " + CONNECT_TIMEOUT_MILLIS + " ms");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        for (Worker worker : this.workers) {
+            if (worker != null && worker.socket == null) worker.destroy();
+            if (worker == null || !worker.isAlive()) this.failures.incrementAndGet();
+        }
+        for (int i = 0; i < this.workerAmount; i++) if (this.workers[i] == null) this.workers[i] = new Worker(i, null);
+    }
+
+    /**
+     * Asks every worker to exit; the ones that don't within a second are killed
+     */
+    @Override
+    public synchronized void close() {
+        if (this.workers == null) return;
+        for (Worker worker : this.workers) {
+            if (!worker.isAlive()) continue;
+            try {
+                worker.out.writeInt(SHUTDOWN);
+                worker.out.flush();
+                worker.process.waitFor(1, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker.destroy();
+        }
+        this.workers = null;
+    }
+
+    /**
+     * A worker process and its connection; only the coordinator thread serving it uses the streams
+     */
+    private static final class Worker {
+        private final int number;
+        private final Process process;
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+        private volatile boolean alive;
+
+        private Worker(int number, Process process) {
+            this.number = number;
+            this.process = process;
+        }
+
+        private void connect(Socket socket, DataInputStream in) throws IOException {
+            this.socket = socket;
+            this.in = in;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.alive = true;
+        }
+
+        private boolean isAlive() {
+            return this.alive;
+        }
+
+        private void sendGraph(Path snapshot) throws IOException {
+            this.out.writeInt(GRAPH);
+            this.out.writeLong(Files.size(snapshot));
+            Files.copy(snapshot, this.out);
+            this.out.flush();
+        }
+
+        private double[] score(int fromSource, int toSource, int edgeAmount) throws IOException {
+            this.out.writeInt(RANGE);
+            this.out.writeInt(fromSource);
+            this.out.writeInt(toSource);
+            this.out.flush();
+
+            if (this.in.readInt() != SCORES) throw new IOException("Unexpected answer from the worker");
+            int length = this.in.readInt();
+            if (length != edgeAmount) throw new IOException("The worker sent " + length + " scores for " + edgeAmount + " edges");
+            return readDoubles(this.in, length);
+        }
+
+        private void destroy() {
+            this.alive = false;
+            try {
+                if (this.socket != null) this.socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (this.process != null) this.process.destroyForcibly();
+        }
+    }
+
+    static double[] readDoubles(DataInputStream in, int length) throws IOException {
+        double[] values = new double[length];
+        byte[] block = new byte[8 * Math.min(length, DOUBLES_PER_BLOCK)];
+        for (int start = 0; start < length; start += DOUBLES_PER_BLOCK) {
+            int amount = Math.min(DOUBLES_PER_BLOCK, length - start);
+            in.readFully(block, 0, 8 * amount);
+            ByteBuffer.wrap(block, 0, 8 * amount).asDoubleBuffer().get(values, start, amount);
+        }
+        return values;
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        byte[] block = new byte[8 * Math.min(values.length, DOUBLES_PER_BLOCK)];
+        for (int start = 0; start < values.length; start += DOUBLES_PER_BLOCK) {
+            int amount = Math.min(DOUBLES_PER_BLOCK, values.length - start);
+            ByteBuffer.wrap(block, 0, 8 * amount).asDoubleBuffer().put(values, start, amount);
+            out.write(block, 0, 8 * amount);
+        }
+    }
+}
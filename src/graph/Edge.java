@@ -2,12 +2,13 @@ package graph;
 
 /**
  * @author Roy Gabriel Crivolotti
- * The purpose of such a simple edge object is to make the transposing of graphs a lot faster than O(n^2)
+ * The purpose of such a simple edge object is to make the transposing of graphs a lot faster than O(n^2).
+ * Two edges are equal when they join the same nodes in the same direction
  */
 
 public class Edge {
-    private int from;
-    private int to;
+    private final int from;
+    private final int to;
 
     public Edge(int from, int to) {
         this.from = from;
@@ -21,4 +22,22 @@ public class Edge {
     public int getTo() {
         return to;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Edge)) return false;
+        Edge edge = (Edge) o;
+        return this.from == edge.from && this.to == edge.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(EdgeIndex.pack(this.from, this.to));
+    }
+
+    @Override
+    public String toString() {
+        return this.from + " -> " + this.to;
+    }
 }
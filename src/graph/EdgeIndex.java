@@ -0,0 +1,136 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Every edge of a CapGraph, keyed by (from << 32 | to) in a LongIntHashMap. Each edge gets an id when it is added,
+ * which it keeps until it is deleted, so arrays indexed by edge id (the betweenness scores, say) stay valid while the
+ * graph changes. The ids of deleted edges are kept in a free list and given to the next edges added, so the ids, and
+ * every array indexed by them, never outgrow the most edges the graph has had at once, however many are added and
+ * deleted over time. Looking an edge up, its reverse included, and deleting it are O(1) on average instead of a scan
+ * of the node's edges
+ */
+
+public class EdgeIndex implements Iterable<Edge> {
+    private final LongIntHashMap ids;
+    // The edge with each id, or null once it was deleted
+    private Edge[] edges;
+    private int capacity;
+    private int size;
+    // Ids of deleted edges, the last one freed on top
+    private int[] freeIds = new int[16];
+    private int freeAmount;
+
+    public EdgeIndex() {
+        this.ids = new LongIntHashMap(-1);
+        this.edges = new Edge[16];
+    }
+
+    public static long pack(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return The id of the edge, unless an edge with the same ends already was in the index: the id most recently
+     * freed by a deletion if there is one, otherwise a new one
+     */
+    public int add(Edge edge) {
+        long key = pack(edge.getFrom(), edge.getTo());
+        int id = this.ids.get(key);
+        if (id >= 0) return id;
+
+        if (this.freeAmount > 0) {
+            id = this.freeIds[--this.freeAmount];
+        } else {
+            if (this.capacity == this.edges.length) this.edges = Arrays.copyOf(this.edges, this.capacity * 2);
+            id = this.capacity++;
+        }
+        this.edges[id] = edge;
+        this.ids.put(key, id);
+        this.size++;
+        return id;
+    }
+
+    /**
+     * @return The id of the edge going from one node to the other, or -1 if there is no such edge
+     */
+    public int idOf(int from, int to) {
+        return this.ids.get(pack(from, to));
+    }
+
+    /**
+     * @return The id of the edge going the opposite way of the one with the given id, or -1 if there is none
+     */
+    public int reverseIdOf(int id) {
+        Edge edge = get(id);
+        return edge == null ? -1 : idOf(edge.getTo(), edge.getFrom());
+    }
+
+    /**
+     * @return The edge with the id, or null if it was deleted or never existed
+     */
+    public Edge get(int id) {
+        return id < 0 || id >= this.capacity ? null : this.edges[id];
+    }
+
+    /**
+     * @return The id the deleted edge had, or -1 if there was no such edge
+     */
+    public int remove(int from, int to) {
+        int id = this.ids.remove(pack(from, to));
+        if (id >= 0) {
+            this.edges[id] = null;
+            this.size--;
+            if (this.freeAmount == this.freeIds.length) this.freeIds = Arrays.copyOf(this.freeIds, this.freeAmount * 2);
+            this.freeIds[this.freeAmount++] = id;
+        }
+        return id;
+    }
+
+    public boolean contains(int from, int to) {
+        return this.ids.containsKey(pack(from, to));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return One more than the highest id given so far: the length of an array with room for every edge id. It only
+     * grows when an edge is added while no deleted id is free, so it is the most edges the index has held at once
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Iterates the edges in order of id; the index must not be modified while iterating
+     */
+    @Override
+    public Iterator<Edge> iterator() {
+        return new Iterator<Edge>() {
+            private int next = advance(0);
+
+            private int advance(int id) {
+                while (id < EdgeIndex.this.capacity && EdgeIndex.this.edges[id] == null) id++;
+                return id;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next < EdgeIndex.this.capacity;
+            }
+
+            @Override
+            public Edge next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Edge edge = EdgeIndex.this.edges[this.next];
+                this.next = advance(this.next + 1);
+                return edge;
+            }
+        };
+    }
+}
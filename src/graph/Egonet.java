@@ -0,0 +1,87 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Compact egonet, as EgonetExtractor returns them: the IDs of its nodes in ascending order and its edges in CSR form,
+ * over local indices (positions in the node array). It has the same nodes and edges as the CapGraph getEgonet returns,
+ * which toGraph builds only if it's actually needed
+ */
+
+public final class Egonet {
+    private final int center;
+    private final int[] nodes;
+    private final int[] offsets;
+    private final int[] targets;
+
+    Egonet(int center, int[] nodes, int[] offsets, int[] targets) {
+        this.center = center;
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    public int getCenter() {
+        return this.center;
+    }
+
+    /**
+     * @return The local index of the center
+     */
+    public int getCenterIndex() {
+        return Arrays.binarySearch(this.nodes, this.center);
+    }
+
+    public int getSize() {
+        return this.nodes.length;
+    }
+
+    public int getEdgeAmount() {
+        return this.targets.length;
+    }
+
+    /**
+     * @return ID of the node with the given local index
+     */
+    public int idAt(int index) {
+        return this.nodes[index];
+    }
+
+    /**
+     * The edges leaving the node with local index i are numbered edgeStart(i) up to edgeEnd(i) - 1
+     */
+    public int edgeStart(int index) {
+        return this.offsets[index];
+    }
+
+    public int edgeEnd(int index) {
+        return this.offsets[index + 1];
+    }
+
+    /**
+     * @return Local index of the node the edge points towards
+     */
+    public int targetAt(int edge) {
+        return this.targets[edge];
+    }
+
+    /**
+     * @return A new mutable CapGraph with the egonet
+     */
+    public CapGraph toGraph() {
+        CapGraph egonet = new CapGraph();
+        for (int id : this.nodes) egonet.addVertex(id);
+        for (int node = 0; node < this.nodes.length; node++) {
+            for (int e = this.offsets[node]; e < this.offsets[node + 1]; e++) egonet.addEdge(this.nodes[node], this.nodes[this.targets[e]]);
+        }
+        return egonet;
+    }
+
+    /**
+     * @return An immutable snapshot sharing this egonet's arrays, since both are laid out the same way
+     */
+    public CsrGraph toCsrGraph() {
+        return new HeapCsrGraph(this.nodes, this.offsets, this.targets);
+    }
+}
@@ -0,0 +1,151 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Extracts the egonets of many centers at once from a single CsrGraph snapshot. Neighbour lists are sorted there, so
+ * the edges among the center's neighbours are found by merging each neighbour's list with the center's one, and since
+ * the center's list is also the egonet's node list (but for the center itself), each match already gives the local
+ * index of the node it points to. No set, node object nor edge object is created: each egonet comes out as an Egonet,
+ * a few int arrays, which can be turned into a CapGraph when needed. Centers are split among threads in chunks
+ */
+
+public class EgonetExtractor {
+    private static final int CENTERS_PER_TASK = 64;
+
+    private final CsrGraph snapshot;
+    private final int parallelism;
+
+    public EgonetExtractor(Graph graph) {
+        this(graph, 1);
+    }
+
+    /**
+     * @param graph A CapGraph, a frozen snapshot, or any other Graph; the snapshot is taken once, here
+     * @param parallelism Amount of threads extracting egonets at the same time in each batch
+     */
+    public EgonetExtractor(Graph graph, int parallelism) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        Parallel.checkParallelism(parallelism);
+        this.snapshot = CsrGraph.of(graph);
+        this.parallelism = parallelism;
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @param center ID of the center
+     * @return Its egonet, or null if there is no such node
+     */
+    public Egonet extract(int center) {
+        return extract(center, new Scratch());
+    }
+
+    /**
+     * @param centers IDs of the centers
+     * @return The egonet of each center, in the same order, with null for the IDs not in the graph
+     */
+    public Egonet[] extract(int[] centers) {
+        if (centers == null) throw new NullPointerException("The array of centers points to a null value");
+        Egonet[] egonets = new Egonet[centers.length];
+        int tasks = (centers.length + CENTERS_PER_TASK - 1) / CENTERS_PER_TASK;
+
+        if (this.parallelism == 1 || tasks <= 1) {
+            extractRange(centers, 0, centers.length, egonets, new Scratch());
+            return egonets;
+        }
+
+        ExecutorService pool = Parallel.daemonPool("egonet-worker", this.parallelism);
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int task = 0; task < tasks; task++) {
+                int from = task * CENTERS_PER_TASK;
+                int to = Math.min(centers.length, from + CENTERS_PER_TASK);
+                futures.add(pool.submit(() -> extractRange(centers, from, to, egonets, scratch.get())));
+            }
+            Parallel.await(futures, "extracting the egonets");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        return egonets;
+    }
+
+    private void extractRange(int[] centers, int from, int to, Egonet[] egonets, Scratch scratch) {
+        for (int i = from; i < to; i++) egonets[i] = extract(centers[i], scratch);
+    }
+
+    /**
+     * Same nodes and edges as CapGraph's getEgonet: the center and its neighbours, the edges from the center to each
+     * of them, and the edges from each of them to any of the center's neighbours
+     */
+    private Egonet extract(int center, Scratch scratch) {
+        CsrGraph graph = this.snapshot;
+        int centerIndex = graph.indexOf(center);
+        if (centerIndex < 0) return null;
+
+        int centerStart = graph.edgeStart(centerIndex);
+        int centerEnd = graph.edgeEnd(centerIndex);
+        int degree = centerEnd - centerStart;
+        boolean selfLoop = graph.edgeIndexOf(centerIndex, centerIndex) >= 0;
+
+        // Position the center takes among its neighbours; the ones after it are shifted one place in the egonet
+        int insertion = 0;
+        while (insertion < degree && graph.targetAt(centerStart + insertion) < centerIndex) insertion++;
+        int shift = selfLoop ? degree : insertion;
+
+        int size = selfLoop ? degree : degree + 1;
+        int[] nodes = new int[size];
+        for (int j = 0; j < degree; j++) nodes[j < shift ? j : j + 1] = graph.idAt(graph.targetAt(centerStart + j));
+        if (!selfLoop) nodes[insertion] = center;
+
+        int[] offsets = new int[size + 1];
+        int edge = 0;
+        for (int local = 0; local < size; local++) {
+            offsets[local] = edge;
+            int node = !selfLoop && local == insertion ? centerIndex : graph.targetAt(centerStart + (local < shift ? local : local - 1));
+
+            if (node == centerIndex) {
+                for (int j = 0; j < degree; j++) edge = scratch.add(edge, j < shift ? j : j + 1);
+                continue;
+            }
+
+            int i = graph.edgeStart(node);
+            int nodeEnd = graph.edgeEnd(node);
+            int j = 0;
+            while (i < nodeEnd && j < degree) {
+                int fromNode = graph.targetAt(i);
+                int fromCenter = graph.targetAt(centerStart + j);
+                if (fromNode < fromCenter) i++;
+                else if (fromNode > fromCenter) j++;
+                else {
+                    edge = scratch.add(edge, j < shift ? j : j + 1);
+                    i++;
+                    j++;
+                }
+            }
+        }
+        offsets[size] = edge;
+
+        return new Egonet(center, nodes, offsets, Arrays.copyOf(scratch.targets, edge));
+    }
+
+    /**
+     * Growable buffer of local targets, reused by every egonet a thread extracts
+     */
+    private static final class Scratch {
+        private int[] targets = new int[256];
+
+        int add(int position, int target) {
+            if (position == this.targets.length) this.targets = Arrays.copyOf(this.targets, 2 * position);
+            this.targets[position] = target;
+            return position + 1;
+        }
+    }
+}
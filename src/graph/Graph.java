@@ -19,6 +19,14 @@ public interface Graph {
      * all Graphs are directed, and we will only test on directed graphs. */
     public List<Graph> getSCCs();
 
+    /* Same SCCs, found by the given amount of threads; with one it is the same as getSCCs. */
+    public default List<Graph> getSCCs(int parallelism) {
+        return new SCC(this, parallelism).getSCCs();
+    }
+
+    /* Returns a new graph with the same vertices and every edge reversed. */
+    public Graph transposeGraph();
+
     /* Return the graph's connections in a readable format. The keys in this HashMap
      * are the vertices in the graph. The values are the nodes that are reachable via a directed
      * edge from the corresponding key. The returned representation ignores edge weights and
@@ -27,7 +35,7 @@ public interface Graph {
 
     public Set<Integer> getNodes();
 
-    public CapNode getNode(int id);
+    public Node getNode(int id);
 
     public boolean containsNode(int id);
 
@@ -0,0 +1,17 @@
+package graph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Told about every change made to a CapGraph it was added to (see CapGraph.addChangeListener), right after the
+ * change is made and on the thread that made it. Only actual changes are reported: adding a vertex or an edge the
+ * graph already has, or deleting one it doesn't, reports nothing
+ */
+
+public interface GraphChangeListener {
+
+    default void vertexAdded(int id) {}
+
+    default void edgeAdded(int from, int to) {}
+
+    default void edgeDeleted(int from, int to) {}
+}
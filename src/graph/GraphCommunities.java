@@ -1,5 +1,8 @@
 package graph;
 
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
 import java.util.*;
 
 /**
@@ -10,9 +13,19 @@ import java.util.*;
 
 public class GraphCommunities {
     private Map<Integer, Set<Graph>> communities;
+    private BrandesBetweenness betweenness;
 
     public GraphCommunities(Graph graph, int amount) {
+        this(graph, amount, new BrandesBetweenness());
+    }
+
+    /**
+     * @param betweenness The engine used to get the edge betweenness scores on each iteration, e.g. a parallel one
+     */
+    public GraphCommunities(Graph graph, int amount, BrandesBetweenness betweenness) {
+        if (betweenness == null) throw new NullPointerException("The betweenness engine passed to this constructor points to a null value");
         this.communities = new HashMap<>();
+        this.betweenness = betweenness;
         detectCommunities(graph, amount);
     }
 
@@ -25,43 +38,36 @@ public class GraphCommunities {
      * are in its periphery, that is they are only loosely connected to that community–, and that it works best on networks that have
      * a naturally hierarchical (nested) structure; nonetheless, it is a key algorithm, and extremely important in the history
      * of community detection algorithms.
+     * Progress is reported to the installed GraphMetrics, if any (see graph.metrics.Metrics)
      * @param graph The Graph to be copied and on which to apply said algorithms
      */
     private void detectCommunities(Graph graph, int communityAmount) {
-        Graph graphCopy = new CapGraph(graph);
-        Map<Edge, Double> betweenness;
+        CapGraph graphCopy = new CapGraph(graph);
+        ComponentBetweenness betweenness = null;
         int iteration = 0;
 
         do {
             iteration++;
-            System.out.println("\nIteration number: " + iteration);
-
-            long start = System.nanoTime();
-            betweenness = getBetweennessScore(graphCopy);
-            long end = System.nanoTime();
-            System.out.println((end - start) / 1000000000 + " seconds to get bet. score.");
-
-            Edge deletedEdge1 = null;
-            Edge deletedEdge2 = null;
-            Double highestScore = 0.0;
-
-            for (Edge edge : betweenness.keySet()) {
-                if (betweenness.get(edge) > highestScore) {
-                    highestScore = betweenness.get(edge);
-                    deletedEdge1 = edge;
-                }
-            }
-
-            if (deletedEdge1 == null) return;
+            // Read once per iteration, and nothing is measured unless a listener is installed
+            GraphMetrics metrics = Metrics.current();
+            long allocated = metrics == null ? 0L : Metrics.allocatedBytes();
+            long workerAllocated = metrics == null ? 0L : this.betweenness.getWorkerAllocatedBytes();
+
+            // Only the component split by the previous iteration is scored again, the others keep their scores
+            long start = metrics == null ? 0L : System.nanoTime();
+            if (betweenness == null) betweenness = new ComponentBetweenness(graphCopy, this.betweenness);
+            Edge highestScoring = betweenness.getHighestScoringEdge();
+            long betweennessNanos = metrics == null ? 0L : System.nanoTime() - start;
+
+            if (highestScoring == null) return;
+            Edge deletedEdge1 = graphCopy.findEdge(highestScoring.getFrom(), highestScoring.getTo());
+            Edge deletedEdge2 = graphCopy.findEdge(highestScoring.getTo(), highestScoring.getFrom());
             graphCopy.deleteEdge(deletedEdge1);
-
-            for (Edge edge : betweenness.keySet()) {
-                if (edge.getFrom() == deletedEdge1.getTo() && edge.getTo() == deletedEdge1.getFrom()) {
-                    graphCopy.deleteEdge(edge);
-                    deletedEdge2 = edge;
-                    System.out.println(edge.getFrom() + " " + edge.getTo());
-                }
-            }
+            if (deletedEdge2 != null) graphCopy.deleteEdge(deletedEdge2);
+            // The component just split is scored again right away, so that is part of this iteration's scoring too
+            start = metrics == null ? 0L : System.nanoTime();
+            betweenness.componentChanged(deletedEdge1.getFrom());
+            if (metrics != null) betweennessNanos += System.nanoTime() - start;
 
             // Instead of doing BFS on graphCopy, I search for the sub-graph where the high-scoring edge is, and process that one
             if (iteration == 1) findCommunities(graphCopy, deletedEdge1, deletedEdge2, iteration);
@@ -70,108 +76,17 @@ public class GraphCommunities {
                     if (g.containsNode(deletedEdge1.getTo())) findCommunities(g, deletedEdge1, deletedEdge2, iteration);
                 }
             }
-            System.out.println("Amt. of comms. found: " + this.communities.get(iteration).size());
-        }
-        while (this.communities.get(iteration).size() < communityAmount);
-        System.out.println("It took " + iteration + " iterations.");
-    }
-
-    /**
-     * See Brandes paper to get an in depth explanation of the algorithm, or the other references cited in
-     * the project's scope definition file
-     * @param graph on which the edge betweenness centrality is to be calculated
-     * @return A Map which pairs said edges with their score
-     * Given the complexity of the algorithm, the stages where divided (and appropriately commented) as
-     * Green, McColl and Bader do in their paper from 2012 (see the file with all academic references used
-     * for the project)
-     */
-    private Map<Edge, Double> getBetweennessScore(Graph graph) {
-        if (graph == null) throw new NullPointerException("The argument passed to this function points to a null value");
-
-        Map<Edge, Double> edgeBetweenness = new HashMap<>();
-
-        // The betweenness centrality score of each edge is initialized to zero (stage 0)
-        for (Edge edge : ((CapGraph)graph).getEdges()) {
-            edgeBetweenness.put(edge, 0.0);
-        }
-
-        // Stages 1, 2 and 3 are performed for every node in the graph
-        for (Integer id : graph.getNodes()) {
-
-            Node currNode = graph.getNode(id);
 
-            // Initialization of data structures: a Stack, a Queue and three collections –one collection
-            // to count the number of shortest paths from each node to the current root, one to measure
-            // the distance from each node to the current root, and one final collection of linked lists
-            // to keep track of the vertices that precede each root in a traversal – Stage 1
-
-            Queue<Node> queue = new LinkedList<>();
-            Stack<Node> endNodeStack = new Stack<>();
-            Map<Node, List<Edge>> shortestPath = new HashMap<>();
-            Map<Node, Integer> amountOfShortestPaths = new HashMap<>();
-            Map<Node, Double> shortestPathLength = new HashMap<>();
-
-            for (Integer endNodeID : graph.getNodes()) {
-                Node currEndNode = graph.getNode(endNodeID);
-                shortestPath.put(currEndNode, new LinkedList<>());
-                amountOfShortestPaths.put(currEndNode, 0); //
-                shortestPathLength.put(currEndNode, Double.POSITIVE_INFINITY);
-            }
-
-            // By definition in Brandes's original paper, the distance from a node to itself is zero
-            amountOfShortestPaths.put(currNode, 1);
-            shortestPathLength.put(currNode, 0.0);
-
-            queue.add(currNode);
-
-
-            // Main loop – Stage 2
-            while (!queue.isEmpty()) {
-                Node prevNode = queue.remove();
-                endNodeStack.push(prevNode);
-
-                for (Edge edge : ((CapNode) prevNode).getOutgoingEdges()) {
-                    Node neighbour = graph.getNode(edge.getTo());
-
-                    // If its the first time its encountered
-                    if (shortestPathLength.get(neighbour) == Double.POSITIVE_INFINITY) {
-                        queue.add(neighbour);
-                        shortestPathLength.put(neighbour, shortestPathLength.get(prevNode) + 1);
-                    }
-
-                    // If its a shortest path
-                    if (shortestPathLength.get(neighbour) == shortestPathLength.get(prevNode) + 1) {
-                        amountOfShortestPaths.put(neighbour, amountOfShortestPaths.get(neighbour) + amountOfShortestPaths.get(prevNode));
-                        shortestPath.get(neighbour).add(edge);
-                    }
-                }
-            }
-
-            // Dependency accumulation based on the back-propagation of dependencies from a node to
-            // its predecessors – Stage 3
-            Map<Edge, Double> dependency = new HashMap<>();
-            for (Edge edge : ((CapGraph)graph).getEdges()) {
-                dependency.put(edge, 0.0);
-            }
-
-            while (!endNodeStack.isEmpty()) {
-                Node node = endNodeStack.pop();
-                double sum = 0.0;
-
-                for (Edge edge : ((CapNode) node).getOutgoingEdges()) {
-//                    System.out.println("Edge from: " + edge.getFrom() + ", to: " + edge.getTo());
-//                    System.out.println("Score of said edge: " + dependency.get(edge));
-                    sum += dependency.get(edge);
-                }
-
-                for (Edge edge : shortestPath.get(node)) {
-                    dependency.put(edge, (double) (amountOfShortestPaths.get(graph.getNode(edge.getFrom())) / amountOfShortestPaths.get(node)) * (1.0 + sum));
-                    edgeBetweenness.put(edge, edgeBetweenness.get(edge) + dependency.get(edge));
-                }
+            if (metrics != null) {
+                int largest = 0;
+                for (Graph community : this.communities.get(iteration)) largest = Math.max(largest, community.getSize());
+                // The calling thread's allocation plus that of the engine's pool threads, if it has any
+                if (allocated >= 0) allocated = Metrics.allocatedBytes() - allocated + this.betweenness.getWorkerAllocatedBytes() - workerAllocated;
+                metrics.communityIteration(iteration, betweennessNanos, deletedEdge2 == null ? 1 : 2,
+                        this.communities.get(iteration).size(), largest, allocated);
             }
         }
-
-        return edgeBetweenness;
+        while (this.communities.get(iteration).size() < communityAmount);
     }
 
     /**
@@ -194,13 +109,12 @@ public class GraphCommunities {
                 ids.add(currNode);
                 allNodes.remove(Integer.valueOf(currNode));
 
-                List<Integer> currNeighbors = new LinkedList<>(graph.getNode(currNode).getNeighbours());
-                if (currNode == deletedEdge.getFrom()) currNeighbors.remove(Integer.valueOf(deletedEdge.getTo()));
-                if (currNode == deletedEdge2.getFrom()) currNeighbors.remove(Integer.valueOf(deletedEdge2.getTo()));
-                ListIterator<Integer> it = currNeighbors.listIterator(currNeighbors.size());
+                NeighbourView currNeighbors = graph.getNode(currNode).getNeighbourView();
 
-                while (it.hasPrevious()) {
-                    int next = it.previous();
+                for (int i = currNeighbors.size() - 1; i >= 0; i--) {
+                    int next = currNeighbors.get(i);
+                    if (currNode == deletedEdge.getFrom() && next == deletedEdge.getTo()) continue;
+                    if (deletedEdge2 != null && currNode == deletedEdge2.getFrom() && next == deletedEdge2.getTo()) continue;
                     if (!visited.contains(next)) {
                         visited.add(next);
                         queue.add(next);
@@ -225,13 +139,14 @@ public class GraphCommunities {
         // Construct the graph by exploring the relationships between the IDs reached in through the traversal algorithm
         // while being careful to exclude the relationship represented by the deleted edge
         for (Integer id : ids) {
-            Set<Integer> neighbors = graph.getNode(id).getNeighbours();
-            for (Integer id2ndLevel : neighbors) {
+            NeighbourView neighbors = graph.getNode(id).getNeighbourView();
+            for (int i = 0; i < neighbors.size(); i++) {
+                int id2ndLevel = neighbors.get(i);
                 if (ids.contains(id2ndLevel)) {
                     Edge newEdge = new Edge(id, id2ndLevel);
                     subGraph.addEdge(newEdge);
                     if (deletedEdge.getFrom() == id && deletedEdge.getTo() == id2ndLevel) subGraph.deleteEdge(newEdge);
-                    if (deletedEdge2.getFrom() == id && deletedEdge2.getTo() == id2ndLevel) subGraph.deleteEdge(newEdge);
+                    if (deletedEdge2 != null && deletedEdge2.getFrom() == id && deletedEdge2.getTo() == id2ndLevel) subGraph.deleteEdge(newEdge);
                 }
             }
         }
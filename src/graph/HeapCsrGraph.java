@@ -0,0 +1,68 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * CsrGraph whose IDs, offsets and targets are plain int arrays on the heap; it's what CsrGraph.of, CsrGraph.fromEdges,
+ * CapGraph.freeze and every derived snapshot (transposed, undirected) return
+ */
+
+final class HeapCsrGraph extends CsrGraph {
+    private final int[] ids;
+    private final int[] offsets;
+    private final int[] targets;
+
+    HeapCsrGraph(int[] ids, int[] offsets, int[] targets) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    @Override
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(this.ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    @Override
+    public int idAt(int index) {
+        return this.ids[index];
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return this.offsets[index];
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return this.offsets[index + 1];
+    }
+
+    @Override
+    public int targetAt(int edge) {
+        return this.targets[edge];
+    }
+
+    @Override
+    int searchTargets(int from, int to, int target) {
+        int edge = Arrays.binarySearch(this.targets, from, to, target);
+        return edge < 0 ? -1 : edge;
+    }
+
+    @Override
+    int[] ids() {
+        return this.ids;
+    }
+
+    @Override
+    public int getEdgeAmount() {
+        return this.targets.length;
+    }
+
+    @Override
+    public int getSize() {
+        return this.ids.length;
+    }
+}
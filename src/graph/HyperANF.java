@@ -0,0 +1,379 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Approximate neighbourhood function, in the way of HyperANF (Boldi, Rosa and Vigna, 2011): every node gets a
+ * HyperLogLog counter that starts holding just the node itself, and at each iteration the counter of every node becomes
+ * the union of its own and the ones of the nodes it points to. After t iterations the counter of a node estimates how
+ * many nodes it reaches in at most t hops, and adding them up estimates the neighbourhood function of the graph (the
+ * amount of pairs of nodes at most t hops away), which gives the distance distribution and the effective diameter.
+ * The registers of a counter are bytes packed eight to a long, so the union is a broadword maximum of eight registers
+ * at a time, and every counter of the graph lives in two long arrays (the current iteration's and the next one's) of
+ * n * registers bytes each. A node whose successors didn't change in the last iteration can't change either, so its
+ * counter is just copied. Nodes are split in fixed ranges, processed by any amount of threads; the results of the
+ * ranges are merged in order, so they are the same for any amount of threads
+ */
+
+public class HyperANF {
+    private static final int NODES_PER_TASK = 1024;
+    private static final int DEFAULT_LOG2_REGISTERS = 7;
+    private static final int DEFAULT_TOP = 10;
+    private static final double DEFAULT_EFFECTIVE_FRACTION = 0.9;
+    // The highest bit of every byte, which register values never use
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final CsrGraph snapshot;
+    private final int log2Registers;
+    private final int registers;
+    // Longs per counter
+    private final int words;
+    private final long seed;
+    private final int top;
+    private final double[] powers;
+
+    private long[] counters;
+    private long[] nextCounters;
+    private final float[] estimates;
+    // Neighbourhood function: the estimated amount of pairs within t hops, for t = 0 up to the amount of hops run
+    private final List<Double> neighbourhood = new ArrayList<>();
+    // Nodes with the highest reach after each hop, and that reach
+    private final List<int[]> topNodes = new ArrayList<>();
+    private final List<float[]> topReach = new ArrayList<>();
+
+    public HyperANF(Graph graph) {
+        this(graph, DEFAULT_LOG2_REGISTERS, 1, 0L);
+    }
+
+    /**
+     * @param log2Registers Logarithm in base 2 of the amount of registers per counter, from 4 to 16; the relative
+     * standard error of each estimate is about 1.04 / sqrt(registers)
+     * @param parallelism Amount of threads updating the counters
+     * @param seed Seed of the hash function placing the nodes in the registers
+     */
+    public HyperANF(Graph graph, int log2Registers, int parallelism, long seed) {
+        this(graph, log2Registers, parallelism, seed, Integer.MAX_VALUE, DEFAULT_TOP);
+    }
+
+    /**
+     * @param maxHops Iterations to run at most; without a limit they go on until no counter changes, which is what the
+     * effective diameter needs
+     * @param top Amount of nodes with the highest reach kept for each amount of hops
+     */
+    public HyperANF(Graph graph, int log2Registers, int parallelism, long seed, int maxHops, int top) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        if (log2Registers < 4 || log2Registers > 16) throw new IllegalArgumentException("The registers must be between 2^4 and 2^16, got 2^" + log2Registers);
+        Parallel.checkParallelism(parallelism);
+        if (maxHops < 1) throw new IllegalArgumentException("There must be at least one hop, got " + maxHops);
+        if (top < 0) throw new IllegalArgumentException("The amount of top nodes can't be negative, got " + top);
+
+        this.snapshot = CsrGraph.of(graph);
+        this.log2Registers = log2Registers;
+        this.registers = 1 << log2Registers;
+        this.words = this.registers / 8;
+        this.seed = seed;
+        this.top = top;
+        this.powers = new double[66];
+        for (int r = 0; r < this.powers.length; r++) this.powers[r] = Math.scalb(1.0, -r);
+
+        int n = this.snapshot.getSize();
+        if ((long) n * this.words > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many counters for " + n + " nodes; use fewer registers");
+        this.counters = new long[n * this.words];
+        this.nextCounters = new long[n * this.words];
+        this.estimates = new float[n];
+        run(parallelism, maxHops);
+    }
+
+    /**
+     * @return The amount of hops run: the iterations until no counter changed, or maxHops
+     */
+    public int getHops() {
+        return this.neighbourhood.size() - 1;
+    }
+
+    /**
+     * @return The estimated amount of ordered pairs (u, v) with v at most t hops away from u (u itself included), for
+     * t from 0 up to getHops()
+     */
+    public double[] getNeighbourhoodFunction() {
+        double[] function = new double[this.neighbourhood.size()];
+        for (int t = 0; t < function.length; t++) function[t] = this.neighbourhood.get(t);
+        return function;
+    }
+
+    /**
+     * @return The estimated amount of pairs exactly t hops apart, for t from 0 up to getHops()
+     */
+    public double[] getDistanceDistribution() {
+        double[] function = getNeighbourhoodFunction();
+        double[] distribution = new double[function.length];
+        for (int t = 0; t < function.length; t++) distribution[t] = t == 0 ? function[0] : Math.max(0.0, function[t] - function[t - 1]);
+        return distribution;
+    }
+
+    /**
+     * @return The 90th percentile of the distance between connected pairs
+     */
+    public double getEffectiveDiameter() {
+        return getEffectiveDiameter(DEFAULT_EFFECTIVE_FRACTION);
+    }
+
+    /**
+     * Smallest amount of hops within which the given fraction of all connected pairs are, interpolated linearly
+     * between two hops as it is usually done; it's only meaningful if the iterations ran until no counter changed
+     * @param fraction Between 0 and 1
+     */
+    public double getEffectiveDiameter(double fraction) {
+        if (!(fraction > 0.0 && fraction <= 1.0)) throw new IllegalArgumentException("The fraction must be between 0 and 1, got " + fraction);
+        double[] function = getNeighbourhoodFunction();
+        double threshold = fraction * function[function.length - 1];
+
+        int t = 0;
+        while (t < function.length - 1 && function[t] < threshold) t++;
+        if (t == 0 || function[t] == function[t - 1]) return t;
+        return t - 1 + (threshold - function[t - 1]) / (function[t] - function[t - 1]);
+    }
+
+    /**
+     * @param hops Amount of hops, from 1; past getHops() the reach no longer changes
+     * @return The IDs of the nodes reaching the most nodes within that many hops (themselves excluded), from the
+     * highest reach down, mapped to their estimated reach
+     */
+    public Map<Integer, Double> getTopReach(int hops) {
+        if (hops < 1) throw new IllegalArgumentException("There must be at least one hop, got " + hops);
+        int index = Math.min(hops, getHops());
+        Map<Integer, Double> reach = new LinkedHashMap<>();
+        if (index == 0) return reach;
+
+        int[] nodes = this.topNodes.get(index - 1);
+        float[] values = this.topReach.get(index - 1);
+        for (int i = 0; i < nodes.length; i++) reach.put(this.snapshot.idAt(nodes[i]), (double) values[i]);
+        return reach;
+    }
+
+    /**
+     * @return The estimated amount of nodes reached by a node within the last amount of hops run (itself excluded), or
+     * -1 if there is no such node
+     */
+    public double getReach(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? -1.0 : Math.max(0.0, this.estimates[index] - 1.0);
+    }
+
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(this.registers);
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    private void run(int parallelism, int maxHops) {
+        int n = this.snapshot.getSize();
+        for (int node = 0; node < n; node++) {
+            addToCounter(node, this.snapshot.idAt(node));
+            this.estimates[node] = (float) estimate(this.counters, node);
+        }
+        double total = 0.0;
+        for (float estimate : this.estimates) total += estimate;
+        this.neighbourhood.add(total);
+        if (n == 0) return;
+
+        int tasks = (n + NODES_PER_TASK - 1) / NODES_PER_TASK;
+        boolean[] changed = new boolean[n];
+        boolean[] nextChanged = new boolean[n];
+        Arrays.fill(changed, true);
+        ExecutorService pool = parallelism > 1 && tasks > 1 ? Parallel.daemonPool("hyperanf-worker", parallelism) : null;
+
+        try {
+            for (int hop = 1; hop <= maxHops; hop++) {
+                boolean[] previous = changed;
+                boolean[] current = nextChanged;
+                List<RangeResult> results = new ArrayList<>(tasks);
+
+                if (pool == null) {
+                    for (int task = 0; task < tasks; task++) results.add(update(task, previous, current));
+                }
+                else {
+                    List<Future<RangeResult>> futures = new ArrayList<>(tasks);
+                    for (int task = 0; task < tasks; task++) {
+                        int range = task;
+                        futures.add(pool.submit(() -> update(range, previous, current)));
+                    }
+                    results.addAll(Parallel.await(futures, "updating the counters"));
+                }
+
+                boolean anyChanged = false;
+                total = 0.0;
+                TopNodes best = new TopNodes(this.top);
+                for (RangeResult result : results) {
+                    anyChanged |= result.changed;
+                    total += result.total;
+                    best.addAll(result.best);
+                }
+                if (!anyChanged) break;
+
+                this.neighbourhood.add(total);
+                this.topNodes.add(Arrays.copyOf(best.nodes, best.size));
+                this.topReach.add(Arrays.copyOf(best.values, best.size));
+
+                long[] swap = this.counters;
+                this.counters = this.nextCounters;
+                this.nextCounters = swap;
+                changed = current;
+                nextChanged = previous;
+            }
+        }
+        finally {
+            if (pool != null) pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One hop for the nodes of a range: each counter of the next iteration is the union of the node's counter and
+     * the counters of its successors
+     * @param previous Nodes whose counter changed in the last iteration
+     * @param current Filled with the nodes whose counter changes in this one
+     */
+    private RangeResult update(int range, boolean[] previous, boolean[] current) {
+        int from = range * NODES_PER_TASK;
+        int to = Math.min(this.snapshot.getSize(), from + NODES_PER_TASK);
+        RangeResult result = new RangeResult(this.top);
+
+        for (int node = from; node < to; node++) {
+            int base = node * this.words;
+            System.arraycopy(this.counters, base, this.nextCounters, base, this.words);
+
+            boolean modified = false;
+            for (int e = this.snapshot.edgeStart(node); e < this.snapshot.edgeEnd(node); e++) {
+                int successor = this.snapshot.targetAt(e);
+                if (previous[successor]) modified |= union(this.nextCounters, base, this.counters, successor * this.words);
+            }
+
+            current[node] = modified;
+            if (modified) {
+                this.estimates[node] = (float) estimate(this.nextCounters, node);
+                result.changed = true;
+            }
+            result.total += this.estimates[node];
+            result.best.add(node, Math.max(0.0f, this.estimates[node] - 1.0f));
+        }
+
+        return result;
+    }
+
+    /**
+     * Broadword maximum of the registers of two counters, eight at a time (see Boldi, Rosa and Vigna): with the high
+     * bit of every byte clear, subtracting the bytes of one word from the other's with those bits set leaves each high
+     * bit set exactly where the first byte is at least as big as the second
+     * @return true if any register of the target grew
+     */
+    private boolean union(long[] target, int targetBase, long[] source, int sourceBase) {
+        boolean grew = false;
+        for (int w = 0; w < this.words; w++) {
+            long x = target[targetBase + w];
+            long y = source[sourceBase + w];
+            long xAtLeastY = ((x | HIGH_BITS) - y) & HIGH_BITS;
+            long mask = (xAtLeastY >>> 7) * 0xFF;
+            long max = (x & mask) | (y & ~mask);
+            if (max != x) {
+                target[targetBase + w] = max;
+                grew = true;
+            }
+        }
+        return grew;
+    }
+
+    /**
+     * The register picked by the top bits of the hash keeps the highest position of the first set bit of the rest
+     */
+    private void addToCounter(int node, int id) {
+        long hash = mix(this.seed ^ (id * 0x9E3779B97F4A7C15L));
+        int register = (int) (hash >>> (64 - this.log2Registers));
+        int value = Math.min(Long.numberOfLeadingZeros(hash << this.log2Registers) + 1, 64 - this.log2Registers + 1);
+
+        int word = node * this.words + register / 8;
+        int shift = 8 * (register % 8);
+        long current = (this.counters[word] >>> shift) & 0xFF;
+        if (value > current) this.counters[word] = (this.counters[word] & ~(0xFFL << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * HyperLogLog's estimate (Flajolet, Fusy, Gandouet and Meunier, 2007), with linear counting for small cardinalities
+     */
+    private double estimate(long[] counters, int node) {
+        double sum = 0.0;
+        int zeros = 0;
+        int base = node * this.words;
+        for (int w = 0; w < this.words; w++) {
+            long word = counters[base + w];
+            for (int b = 0; b < 8; b++) {
+                int value = (int) (word >>> (8 * b)) & 0xFF;
+                sum += this.powers[value];
+                if (value == 0) zeros++;
+            }
+        }
+
+        double m = this.registers;
+        double alpha = 0.7213 / (1.0 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) estimate = m * Math.log(m / zeros);
+        return estimate;
+    }
+
+    /**
+     * SplitMix64 finaliser
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * What one range of nodes contributes to an iteration
+     */
+    private static final class RangeResult {
+        private final TopNodes best;
+        private boolean changed;
+        private double total;
+
+        private RangeResult(int top) {
+            this.best = new TopNodes(top);
+        }
+    }
+
+    /**
+     * The nodes with the highest values seen, sorted from the highest down; ties go to the lowest dense index, so the
+     * result doesn't depend on the order the nodes are seen in
+     */
+    private static final class TopNodes {
+        private final int[] nodes;
+        private final float[] values;
+        private int size;
+
+        private TopNodes(int capacity) {
+            this.nodes = new int[capacity];
+            this.values = new float[capacity];
+        }
+
+        void add(int node, float value) {
+            int position = this.size;
+            while (position > 0 && (this.values[position - 1] < value || (this.values[position - 1] == value && this.nodes[position - 1] > node))) position--;
+            if (position == this.nodes.length) return;
+
+            int last = Math.min(this.size, this.nodes.length - 1);
+            System.arraycopy(this.nodes, position, this.nodes, position + 1, last - position);
+            System.arraycopy(this.values, position, this.values, position + 1, last - position);
+            this.nodes[position] = node;
+            this.values[position] = value;
+            if (this.size < this.nodes.length) this.size++;
+        }
+
+        void addAll(TopNodes other) {
+            for (int i = 0; i < other.size; i++) add(other.nodes[i], other.values[i]);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package graph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Two-way mapping between the external IDs of the nodes, which can be sparse (the Twitter IDs of twitter_higgs go
+ * up to ~456k with gaps) and dense indices 0..n-1, handed out in order of insertion and never taken back, so the
+ * algorithms can keep their per-node state in plain arrays and only translate at the API boundary.
+ * It is an IntHashSet that is never removed from: the position of an ID in the set is its index, so the mapping
+ * costs a single array of IDs plus the hash table over it
+ */
+
+public class IdDictionary {
+    private final IntHashSet ids;
+
+    public IdDictionary() {
+        this.ids = new IntHashSet();
+    }
+
+    public IdDictionary(int expectedSize) {
+        this.ids = new IntHashSet(expectedSize);
+    }
+
+    /**
+     * @return The index of the ID, which is the next one (size() before the call) if it wasn't in the dictionary
+     */
+    public int add(int id) {
+        this.ids.add(id);
+        return this.ids.indexOf(id);
+    }
+
+    /**
+     * @return The index of the ID, or -1 if it isn't in the dictionary
+     */
+    public int indexOf(int id) {
+        return this.ids.indexOf(id);
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException If there is no such index
+     */
+    public int idAt(int index) {
+        return this.ids.get(index);
+    }
+
+    public boolean contains(int id) {
+        return this.ids.contains(id);
+    }
+
+    public int size() {
+        return this.ids.size();
+    }
+}
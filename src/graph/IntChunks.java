@@ -0,0 +1,104 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Array of ints outside of the heap, either in direct buffers or in a memory-mapped file. A single buffer can't hold
+ * more than 2 GB, so the ints are split in chunks of a fixed power of two and an index is split into the chunk and
+ * the position within it with a shift and a mask. The garbage collector only ever sees the few chunk objects, however
+ * many ints they hold
+ */
+
+final class IntChunks {
+    static final int DEFAULT_SHIFT = 24;
+
+    private final int shift;
+    private final int mask;
+    private IntBuffer[] chunks;
+    private long length;
+
+    private IntChunks(IntBuffer[] chunks, long length, int shift) {
+        this.chunks = chunks;
+        this.length = length;
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+    }
+
+    /**
+     * @return length ints in direct buffers, all of them zero
+     */
+    static IntChunks allocate(long length) {
+        return allocate(length, DEFAULT_SHIFT);
+    }
+
+    /**
+     * @param shift Chunks hold 2^shift ints each
+     */
+    static IntChunks allocate(long length, int shift) {
+        IntChunks array = new IntChunks(new IntBuffer[0], 0, shift);
+        array.grow(length);
+        return array;
+    }
+
+    /**
+     * Maps amount ints of a little-endian file, starting at the given byte, read-only
+     */
+    static IntChunks map(FileChannel channel, long start, long amount) throws IOException {
+        int chunkInts = 1 << DEFAULT_SHIFT;
+        IntBuffer[] chunks = new IntBuffer[(int) Math.max(1, (amount + chunkInts - 1) / chunkInts)];
+        for (int c = 0; c < chunks.length; c++) {
+            long first = (long) c * chunkInts;
+            long ints = Math.min(chunkInts, amount - first);
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start + 4 * first, 4 * ints)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return new IntChunks(chunks, amount, DEFAULT_SHIFT);
+    }
+
+    int get(int index) {
+        return this.chunks[index >>> this.shift].get(index & this.mask);
+    }
+
+    void set(int index, int value) {
+        this.chunks[index >>> this.shift].put(index & this.mask, value);
+    }
+
+    long length() {
+        return this.length;
+    }
+
+    /**
+     * Makes room for at least length ints, keeping the ones there are; only the last chunk is ever copied, and only
+     * while it is smaller than a full chunk
+     */
+    void grow(long length) {
+        if (length <= this.length) return;
+        int chunkInts = 1 << this.shift;
+        int amount = (int) ((length + chunkInts - 1) >>> this.shift);
+        IntBuffer[] chunks = Arrays.copyOf(this.chunks, Math.max(amount, this.chunks.length));
+
+        for (int c = 0; c < amount; c++) {
+            long needed = Math.min(chunkInts, length - ((long) c << this.shift));
+            IntBuffer chunk = chunks[c];
+            if (chunk != null && chunk.capacity() >= needed) continue;
+
+            // The last chunk grows by doubling, so tiny arrays don't take a whole chunk of memory
+            int capacity = c == amount - 1 ? (int) Math.min(chunkInts, Math.max(needed, chunk == null ? 0 : 2L * chunk.capacity())) : chunkInts;
+            IntBuffer grown = ByteBuffer.allocateDirect(4 * capacity).order(ByteOrder.nativeOrder()).asIntBuffer();
+            if (chunk != null) {
+                chunk.clear();
+                grown.put(chunk);
+                grown.clear();
+            }
+            chunks[c] = grown;
+        }
+        this.chunks = chunks;
+        this.length = length;
+    }
+}
@@ -0,0 +1,135 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Set of primitive ints, used for the adjacency of each CapNode instead of a HashSet of boxed Integers.
+ * The values are kept packed in an array, in insertion order until something is removed, and an open addressing
+ * table with linear probing maps each value to its position in that array. That way add, remove and contains are
+ * O(1) on average and the set can be iterated by position (it is its own NeighbourView) without an iterator object
+ */
+
+public class IntHashSet implements NeighbourView {
+    private static final int EMPTY = 0;
+
+    private int[] values;
+    // Position of each value in the values array plus one, so that zero can mean an empty slot
+    private int[] slots;
+    private int size;
+
+    public IntHashSet() {
+        this(4);
+    }
+
+    public IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.values = new int[Math.max(4, expectedSize)];
+        this.slots = new int[capacity];
+    }
+
+    /**
+     * @return true if the value was added, false if it already was in the set
+     */
+    public boolean add(int value) {
+        int slot = findSlot(value);
+        if (this.slots[slot] != EMPTY) return false;
+
+        if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, this.size * 2);
+        this.values[this.size++] = value;
+        this.slots[slot] = this.size;
+
+        if (this.size * 2 > this.slots.length) rehash(this.slots.length * 2);
+        return true;
+    }
+
+    /**
+     * The last value of the array takes the place of the removed one, and the probing sequence is repaired by
+     * shifting back the entries that follow the freed slot (so no tombstones are needed)
+     * @return true if the value was in the set
+     */
+    public boolean remove(int value) {
+        int slot = findSlot(value);
+        if (this.slots[slot] == EMPTY) return false;
+
+        int position = this.slots[slot] - 1;
+        int last = this.values[--this.size];
+        if (position != this.size) {
+            this.slots[findSlot(last)] = position + 1;
+            this.values[position] = last;
+        }
+
+        int mask = this.slots.length - 1;
+        int free = slot;
+        int curr = (slot + 1) & mask;
+        while (this.slots[curr] != EMPTY) {
+            int home = hash(this.values[this.slots[curr] - 1]) & mask;
+            // The entry may only move back to the free slot if that doesn't put it before its home slot
+            if (((curr - home) & mask) >= ((curr - free) & mask)) {
+                this.slots[free] = this.slots[curr];
+                free = curr;
+            }
+            curr = (curr + 1) & mask;
+        }
+        this.slots[free] = EMPTY;
+        return true;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return this.slots[findSlot(value)] != EMPTY;
+    }
+
+    /**
+     * @return The position of the value, from 0 to size() - 1, or -1 if it isn't in the set; positions only change
+     * when values are removed
+     */
+    public int indexOf(int value) {
+        return this.slots[findSlot(value)] - 1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int get(int position) {
+        if (position >= this.size) throw new IndexOutOfBoundsException("Position " + position + " in a set of size " + this.size);
+        return this.values[position];
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return A boxed copy of the set, for the methods that have to return a java.util.Set
+     */
+    public HashSet<Integer> toSet() {
+        HashSet<Integer> set = new HashSet<>();
+        for (int i = 0; i < this.size; i++) set.add(this.values[i]);
+        return set;
+    }
+
+    /**
+     * @return The slot holding the value, or the empty slot where it would go
+     */
+    private int findSlot(int value) {
+        int mask = this.slots.length - 1;
+        int slot = hash(value) & mask;
+        while (this.slots[slot] != EMPTY && this.values[this.slots[slot] - 1] != value) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        this.slots = new int[capacity];
+        for (int i = 0; i < this.size; i++) this.slots[findSlot(this.values[i])] = i + 1;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,227 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Label propagation (Raghavan, Albert and Kumara, 2007): every node starts with its own label and repeatedly takes the
+ * label most of its neighbours have, until no label changes; the nodes sharing a label form a community. It is near
+ * linear and needs no betweenness at all, at the price of rougher communities than Louvain's or Girvan-Newman's.
+ * The update is semi-synchronous (Cordasco and Gargano, 2010): the nodes are greedily coloured so that no two
+ * neighbours share a colour, and one colour class is updated at a time. Nodes of the same class never read each
+ * other's labels, so a class can be split among any amount of threads and the result is still the same; ties between
+ * labels are broken by a hash of the seed, the node, the iteration and the label, so a given seed always gives the
+ * same communities. Edges are taken as undirected
+ */
+
+public class LabelPropagationCommunities {
+    private static final int DEFAULT_MAX_ITERATIONS = 100;
+    private static final int NODES_PER_TASK = 4096;
+
+    private final CsrGraph snapshot;
+    private final int[] membership;
+    private int iterations;
+    private Map<Integer, Set<Graph>> communities;
+
+    public LabelPropagationCommunities(Graph graph) {
+        this(graph, 1, 0L);
+    }
+
+    /**
+     * @param graph A CapGraph, a frozen snapshot, or any other Graph
+     * @param parallelism Amount of threads used to update each colour class
+     * @param seed Seed for the tie-breaking between labels
+     */
+    public LabelPropagationCommunities(Graph graph, int parallelism, long seed) {
+        this(graph, parallelism, seed, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param maxIterations Maximum amount of passes over every colour class, in case labels keep changing
+     */
+    public LabelPropagationCommunities(Graph graph, int parallelism, long seed, int maxIterations) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        Parallel.checkParallelism(parallelism);
+        if (maxIterations < 1) throw new IllegalArgumentException("There must be at least one iteration, got " + maxIterations);
+
+        this.snapshot = CsrGraph.of(graph);
+        this.membership = propagate(this.snapshot.toUndirected(), parallelism, seed, maxIterations);
+        Communities.compact(this.membership);
+    }
+
+    /**
+     * @return The community number (from 0) of every node, indexed by the dense indices of getSnapshot()
+     */
+    public int[] getMembership() {
+        return this.membership.clone();
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return The amount of iterations it took for the labels to settle (or the maximum, if they never did)
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * There is a single level, the final one, so the only key of the map is 1
+     * @return The same kind of map GraphCommunities returns, with one sub-graph per community
+     */
+    public Map<Integer, Set<Graph>> getCommunities() {
+        if (this.communities == null) {
+            this.communities = new HashMap<>();
+            this.communities.put(1, Communities.toSubgraphs(this.snapshot, this.membership));
+        }
+        return this.communities;
+    }
+
+    private int[] propagate(CsrGraph undirected, int parallelism, long seed, int maxIterations) {
+        int n = undirected.getSize();
+        int[] labels = new int[n];
+        for (int node = 0; node < n; node++) labels[node] = node;
+
+        int[][] colourClasses = colourClasses(undirected);
+        ExecutorService pool = parallelism > 1 ? Parallel.daemonPool("label-propagation-worker", parallelism) : null;
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+
+        try {
+            boolean changed = true;
+            while (changed && this.iterations < maxIterations) {
+                this.iterations++;
+                int iteration = this.iterations;
+                changed = false;
+
+                for (int[] colourClass : colourClasses) {
+                    int tasks = (colourClass.length + NODES_PER_TASK - 1) / NODES_PER_TASK;
+                    if (pool == null || tasks == 1) {
+                        changed |= updateNodes(undirected, labels, colourClass, 0, colourClass.length, seed, iteration, scratch.get());
+                        continue;
+                    }
+
+                    List<Future<Boolean>> futures = new ArrayList<>(tasks);
+                    for (int task = 0; task < tasks; task++) {
+                        int from = task * NODES_PER_TASK;
+                        int to = Math.min(colourClass.length, from + NODES_PER_TASK);
+                        futures.add(pool.submit(() -> updateNodes(undirected, labels, colourClass, from, to, seed, iteration, scratch.get())));
+                    }
+                    for (boolean taskChanged : Parallel.await(futures, "propagating the labels")) changed |= taskChanged;
+                }
+            }
+        }
+        finally {
+            if (pool != null) pool.shutdownNow();
+        }
+
+        return labels;
+    }
+
+    /**
+     * Moves each node of the range to the label most of its neighbours have; if its current label is among the most
+     * frequent ones it is kept (which is what makes the process converge), otherwise the tie is broken by the hash
+     * @return true if any label changed
+     */
+    private static boolean updateNodes(CsrGraph undirected, int[] labels, int[] nodes, int from, int to, long seed,
+                                       int iteration, Scratch scratch) {
+        int[] counts = scratch.counts;
+        int[] touched = scratch.touched;
+        boolean changed = false;
+
+        for (int i = from; i < to; i++) {
+            int node = nodes[i];
+            int start = undirected.edgeStart(node);
+            int end = undirected.edgeEnd(node);
+            if (start == end) continue;
+
+            int amountTouched = 0;
+            int highest = 0;
+            for (int e = start; e < end; e++) {
+                int label = labels[undirected.targetAt(e)];
+                if (counts[label]++ == 0) touched[amountTouched++] = label;
+                highest = Math.max(highest, counts[label]);
+            }
+
+            int current = labels[node];
+            int best = current;
+            if (counts[current] != highest) {
+                long bestHash = Long.MIN_VALUE;
+                for (int t = 0; t < amountTouched; t++) {
+                    int label = touched[t];
+                    if (counts[label] != highest) continue;
+                    long hash = hash(seed, node, iteration, label);
+                    if (best == current || hash > bestHash) {
+                        best = label;
+                        bestHash = hash;
+                    }
+                }
+            }
+
+            for (int t = 0; t < amountTouched; t++) counts[touched[t]] = 0;
+            if (best != current) {
+                labels[node] = best;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Greedy colouring in order of dense index: each node gets the lowest colour none of its neighbours has
+     * @return The nodes of each colour
+     */
+    private static int[][] colourClasses(CsrGraph undirected) {
+        int n = undirected.getSize();
+        int[] colour = new int[n];
+        // Last node that forbade each colour; avoids clearing an array of forbidden colours for every node
+        int[] forbiddenBy = new int[n + 1];
+        Arrays.fill(forbiddenBy, -1);
+        int amount = 0;
+
+        for (int node = 0; node < n; node++) {
+            for (int e = undirected.edgeStart(node); e < undirected.edgeEnd(node); e++) {
+                int neighbour = undirected.targetAt(e);
+                if (neighbour < node) forbiddenBy[colour[neighbour]] = node;
+            }
+            int c = 0;
+            while (forbiddenBy[c] == node) c++;
+            colour[node] = c;
+            amount = Math.max(amount, c + 1);
+        }
+
+        int[] sizes = new int[amount];
+        for (int node = 0; node < n; node++) sizes[colour[node]]++;
+        int[][] classes = new int[amount][];
+        for (int c = 0; c < amount; c++) classes[c] = new int[sizes[c]];
+        int[] filled = new int[amount];
+        for (int node = 0; node < n; node++) classes[colour[node]][filled[colour[node]]++] = node;
+        return classes;
+    }
+
+    /**
+     * SplitMix64 finaliser over the four values, so ties are broken uniformly but reproducibly
+     */
+    private static long hash(long seed, int node, int iteration, int label) {
+        long h = seed ^ ((long) node << 32 | (iteration & 0xFFFFFFFFL)) ^ ((long) label * 0x9E3779B97F4A7C15L);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Label counts of one thread; only the touched entries are cleared after each node
+     */
+    private static final class Scratch {
+        private final int[] counts;
+        private final int[] touched;
+
+        private Scratch(int n) {
+            this.counts = new int[n];
+            this.touched = new int[n];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Map from primitive longs to primitive ints, so neither keys nor values are ever boxed. Open addressing with linear
+ * probing over two parallel arrays; removals shift back the entries that follow the freed slot, as in IntHashSet, so
+ * there are no tombstones and lookups never slow down after many deletions
+ */
+
+public class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    // Whether each slot is taken, since every long, zero included, is a valid key
+    private boolean[] used;
+    private int size;
+    private final int missing;
+
+    /**
+     * @param missing Value returned by get and remove for the keys that aren't in the map
+     */
+    public LongIntHashMap(int missing) {
+        this(16, missing);
+    }
+
+    public LongIntHashMap(int expectedSize, int missing) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.missing = missing;
+    }
+
+    /**
+     * @return The value of the key, or the missing value if it isn't in the map
+     */
+    public int get(long key) {
+        int slot = findSlot(key);
+        return this.used[slot] ? this.values[slot] : this.missing;
+    }
+
+    public boolean containsKey(long key) {
+        return this.used[findSlot(key)];
+    }
+
+    /**
+     * @return The previous value of the key, or the missing value if it wasn't in the map
+     */
+    public int put(long key, int value) {
+        int slot = findSlot(key);
+        if (this.used[slot]) {
+            int previous = this.values[slot];
+            this.values[slot] = value;
+            return previous;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.used[slot] = true;
+        if (++this.size * 2 > this.keys.length) rehash(this.keys.length * 2);
+        return this.missing;
+    }
+
+    /**
+     * @return The value the key had, or the missing value if it wasn't in the map
+     */
+    public int remove(long key) {
+        int slot = findSlot(key);
+        if (!this.used[slot]) return this.missing;
+        int previous = this.values[slot];
+
+        int mask = this.keys.length - 1;
+        int free = slot;
+        int curr = (slot + 1) & mask;
+        while (this.used[curr]) {
+            int home = hash(this.keys[curr]) & mask;
+            // The entry may only move back to the free slot if that doesn't put it before its home slot
+            if (((curr - home) & mask) >= ((curr - free) & mask)) {
+                this.keys[free] = this.keys[curr];
+                this.values[free] = this.values[curr];
+                free = curr;
+            }
+            curr = (curr + 1) & mask;
+        }
+        this.used[free] = false;
+        this.size--;
+        return previous;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it would go
+     */
+    private int findSlot(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.used[slot] && this.keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = findSlot(oldKeys[i]);
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = oldValues[i];
+            this.used[slot] = true;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,302 @@
+package graph;
+
+import java.util.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Louvain's modularity optimisation (Blondel, Guillaume, Lambiotte and Lefebvre, 2008), the near-linear alternative
+ * to Girvan-Newman mentioned in the project's scope definition. Each level has two phases: every node is moved to the
+ * neighbouring community that increases modularity the most until no move helps, and then every community is collapsed
+ * into a single node of a new, smaller graph on which the next level runs. It stops when a level moves nothing.
+ * Edges are taken as undirected: the weight between two nodes is 1 if both directed edges exist (as in the Facebook
+ * data) and 0.5 if only one does. Every aggregate (community degrees, weights to neighbouring communities) lives in
+ * primitive arrays indexed by node or community number
+ */
+
+public class LouvainCommunities {
+    // Moves that gain less modularity than this are not worth another pass over the nodes
+    private static final double MIN_GAIN = 1e-12;
+
+    private final CsrGraph snapshot;
+    private final List<int[]> memberships;
+    private final List<Double> modularities;
+    private Map<Integer, Set<Graph>> communities;
+
+    public LouvainCommunities(Graph graph) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        this.snapshot = CsrGraph.of(graph);
+        this.memberships = new ArrayList<>();
+        this.modularities = new ArrayList<>();
+        detectCommunities();
+    }
+
+    /**
+     * @return The amount of levels found; level 1 is the finest partition, the last one the coarsest
+     */
+    public int getLevelAmount() {
+        return this.memberships.size();
+    }
+
+    /**
+     * @param level From 1 to getLevelAmount()
+     * @return The community number (from 0) of every node at that level, indexed by the dense indices of getSnapshot()
+     */
+    public int[] getMembership(int level) {
+        return this.memberships.get(level - 1).clone();
+    }
+
+    /**
+     * @param level From 1 to getLevelAmount()
+     * @return The modularity of the partition at that level
+     */
+    public double getModularity(int level) {
+        return this.modularities.get(level - 1);
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * The sub-graphs are built on the first call only; the membership arrays are much lighter if that's all it takes
+     * @return The same kind of map GraphCommunities returns: each level mapped to a set of sub-graphs, one per community
+     */
+    public Map<Integer, Set<Graph>> getCommunities() {
+        if (this.communities == null) {
+            this.communities = new HashMap<>();
+            for (int level = 1; level <= this.memberships.size(); level++) {
+                this.communities.put(level, Communities.toSubgraphs(this.snapshot, this.memberships.get(level - 1)));
+            }
+        }
+        return this.communities;
+    }
+
+    private void detectCommunities() {
+        Level level = Level.of(this.snapshot);
+        if (level.totalWeight == 0.0) return;
+
+        int[] membership = new int[this.snapshot.getSize()];
+        for (int node = 0; node < membership.length; node++) membership[node] = node;
+
+        while (true) {
+            int[] community = level.moveNodes();
+            int amount = Communities.compact(community);
+            if (amount == level.size) break;
+
+            for (int node = 0; node < membership.length; node++) membership[node] = community[membership[node]];
+            this.memberships.add(membership.clone());
+            this.modularities.add(level.modularity(community, amount));
+
+            level = level.aggregate(community, amount);
+        }
+    }
+
+    /**
+     * Undirected weighted graph of one level, in CSR form; self loops are kept apart, since a community collapsed
+     * into a single node keeps its inner weight as a self loop
+     */
+    private static final class Level {
+        private final int size;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final double[] selfLoops;
+        // Sum of the weights of every edge touching each node, self loop included
+        private final double[] degrees;
+        // Twice the total weight of the graph (2m in the papers)
+        private final double totalWeight;
+
+        private Level(int size, int[] offsets, int[] targets, double[] weights, double[] selfLoops) {
+            this.size = size;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.selfLoops = selfLoops;
+            this.degrees = new double[size];
+
+            double total = 0.0;
+            for (int node = 0; node < size; node++) {
+                double degree = selfLoops[node];
+                for (int e = offsets[node]; e < offsets[node + 1]; e++) degree += weights[e];
+                this.degrees[node] = degree;
+                total += degree;
+            }
+            this.totalWeight = total;
+        }
+
+        /**
+         * First level: both directions of every edge, half a unit of weight each, merged by sorting each row
+         */
+        static Level of(CsrGraph snapshot) {
+            int n = snapshot.getSize();
+            int[] degree = new int[n + 1];
+            for (int node = 0; node < n; node++) {
+                for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                    int neighbour = snapshot.targetAt(e);
+                    if (neighbour == node) continue;
+                    degree[node + 1]++;
+                    degree[neighbour + 1]++;
+                }
+            }
+            for (int node = 0; node < n; node++) degree[node + 1] += degree[node];
+
+            int[] both = new int[degree[n]];
+            int[] next = Arrays.copyOf(degree, n);
+            for (int node = 0; node < n; node++) {
+                for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                    int neighbour = snapshot.targetAt(e);
+                    if (neighbour == node) continue;
+                    both[next[node]++] = neighbour;
+                    both[next[neighbour]++] = node;
+                }
+            }
+
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[both.length];
+            double[] weights = new double[both.length];
+            int edge = 0;
+            for (int node = 0; node < n; node++) {
+                offsets[node] = edge;
+                Arrays.sort(both, degree[node], degree[node + 1]);
+                for (int i = degree[node]; i < degree[node + 1]; i++) {
+                    if (edge > offsets[node] && targets[edge - 1] == both[i]) weights[edge - 1] += 0.5;
+                    else {
+                        targets[edge] = both[i];
+                        weights[edge++] = 0.5;
+                    }
+                }
+            }
+            offsets[n] = edge;
+
+            return new Level(n, offsets, Arrays.copyOf(targets, edge), Arrays.copyOf(weights, edge), new double[n]);
+        }
+
+        /**
+         * Local moving phase
+         * @return The community of every node of this level (community numbers are node numbers, not compacted)
+         */
+        int[] moveNodes() {
+            int[] community = new int[this.size];
+            double[] communityDegree = new double[this.size];
+            double[] weightTo = new double[this.size];
+            int[] touched = new int[this.size];
+            for (int node = 0; node < this.size; node++) {
+                community[node] = node;
+                communityDegree[node] = this.degrees[node];
+            }
+
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                for (int node = 0; node < this.size; node++) {
+                    int current = community[node];
+                    double degree = this.degrees[node];
+
+                    // Weights from the node to each neighbouring community, the current one always included
+                    int amountTouched = 0;
+                    touched[amountTouched++] = current;
+                    weightTo[current] = 0.0;
+                    for (int e = this.offsets[node]; e < this.offsets[node + 1]; e++) {
+                        int neighbourCommunity = community[this.targets[e]];
+                        if (weightTo[neighbourCommunity] == 0.0 && neighbourCommunity != current) touched[amountTouched++] = neighbourCommunity;
+                        weightTo[neighbourCommunity] += this.weights[e];
+                    }
+
+                    // The node is taken out of its community, then put back where the gain is highest
+                    communityDegree[current] -= degree;
+                    int best = current;
+                    double bestGain = weightTo[current] - communityDegree[current] * degree / this.totalWeight;
+                    for (int i = 1; i < amountTouched; i++) {
+                        int candidate = touched[i];
+                        double gain = weightTo[candidate] - communityDegree[candidate] * degree / this.totalWeight;
+                        if (gain > bestGain + MIN_GAIN) {
+                            best = candidate;
+                            bestGain = gain;
+                        }
+                    }
+                    communityDegree[best] += degree;
+
+                    for (int i = 0; i < amountTouched; i++) weightTo[touched[i]] = 0.0;
+                    if (best != current) {
+                        community[node] = best;
+                        moved = true;
+                    }
+                }
+            }
+
+            return community;
+        }
+
+        /**
+         * Q = sum over the communities of (inner weight / 2m) - (community degree / 2m)^2
+         * @param community Compacted community of every node of this level
+         */
+        double modularity(int[] community, int amount) {
+            double[] inner = new double[amount];
+            double[] communityDegree = new double[amount];
+            for (int node = 0; node < this.size; node++) {
+                int c = community[node];
+                communityDegree[c] += this.degrees[node];
+                inner[c] += this.selfLoops[node];
+                for (int e = this.offsets[node]; e < this.offsets[node + 1]; e++) {
+                    if (community[this.targets[e]] == c) inner[c] += this.weights[e];
+                }
+            }
+
+            double modularity = 0.0;
+            for (int c = 0; c < amount; c++) {
+                double fraction = communityDegree[c] / this.totalWeight;
+                modularity += inner[c] / this.totalWeight - fraction * fraction;
+            }
+            return modularity;
+        }
+
+        /**
+         * Aggregation phase: one node per community, edge weights summed, inner weights turned into self loops
+         * @param community Compacted community of every node of this level
+         */
+        Level aggregate(int[] community, int amount) {
+            // Members of each community, grouped with a counting sort
+            int[] start = new int[amount + 1];
+            for (int node = 0; node < this.size; node++) start[community[node] + 1]++;
+            for (int c = 0; c < amount; c++) start[c + 1] += start[c];
+            int[] members = new int[this.size];
+            int[] next = Arrays.copyOf(start, amount);
+            for (int node = 0; node < this.size; node++) members[next[community[node]]++] = node;
+
+            int[] offsets = new int[amount + 1];
+            int[] targets = new int[this.targets.length];
+            double[] weights = new double[this.targets.length];
+            double[] selfLoops = new double[amount];
+            double[] weightTo = new double[amount];
+            int[] touched = new int[amount];
+            int edge = 0;
+
+            for (int c = 0; c < amount; c++) {
+                offsets[c] = edge;
+                int amountTouched = 0;
+                for (int i = start[c]; i < start[c + 1]; i++) {
+                    int node = members[i];
+                    selfLoops[c] += this.selfLoops[node];
+                    for (int e = this.offsets[node]; e < this.offsets[node + 1]; e++) {
+                        int neighbourCommunity = community[this.targets[e]];
+                        if (neighbourCommunity == c) selfLoops[c] += this.weights[e];
+                        else {
+                            if (weightTo[neighbourCommunity] == 0.0) touched[amountTouched++] = neighbourCommunity;
+                            weightTo[neighbourCommunity] += this.weights[e];
+                        }
+                    }
+                }
+                Arrays.sort(touched, 0, amountTouched);
+                for (int i = 0; i < amountTouched; i++) {
+                    targets[edge] = touched[i];
+                    weights[edge++] = weightTo[touched[i]];
+                    weightTo[touched[i]] = 0.0;
+                }
+            }
+            offsets[amount] = edge;
+
+            return new Level(amount, offsets, Arrays.copyOf(targets, edge), Arrays.copyOf(weights, edge), selfLoops);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * CsrGraph served straight from a memory-mapped binary graph file, with no deserialization step: opening it only maps
+ * the file and checks its header, and every query reads the mapped pages. Several JVMs opening the same file share a
+ * single copy of it in the page cache.
+ * The format is little-endian throughout:
+ * a 16 byte header (the magic number, the format version, the amount of nodes n and the amount of edges m, one int
+ * each), then the n IDs in ascending order, the n + 1 offsets and the m targets, all of them ints, exactly as a
+ * CsrGraph lays them out. BinaryGraphConverter in util writes these files out of the text edge lists
+ */
+
+public final class MappedCsrGraph extends CsrGraph {
+    // "CSRG" read as a little-endian int
+    public static final int MAGIC = 0x47525343;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    // Ints written per call when saving a file
+    private static final int WRITE_BATCH = 1 << 16;
+
+    private final IntChunks ids;
+    private final IntChunks offsets;
+    private final IntChunks targets;
+    private final int size;
+    private final int edgeAmount;
+
+    private MappedCsrGraph(IntChunks ids, IntChunks offsets, IntChunks targets, int size, int edgeAmount) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.size = size;
+        this.edgeAmount = edgeAmount;
+    }
+
+    /**
+     * Maps a binary graph file read-only
+     * @param filename Path to a file written by write
+     * @return The graph backed by the file, or null if the file couldn't be read
+     * @throws IllegalArgumentException If the file isn't a binary graph file of a version this class can read
+     */
+    public static MappedCsrGraph open(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) throw new IllegalArgumentException(filename + " is too short to be a binary graph file.");
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) throw new IllegalArgumentException(filename + " is not a binary graph file.");
+            if (header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException(filename + " has format version " + header.getInt(4) + ", only version " + VERSION + " can be read.");
+            }
+            int size = header.getInt(8);
+            int edgeAmount = header.getInt(12);
+            if (size < 0 || edgeAmount < 0) throw new IllegalArgumentException(filename + " has a corrupt header.");
+
+            long idsStart = HEADER_BYTES;
+            long offsetsStart = idsStart + 4L * size;
+            long targetsStart = offsetsStart + 4L * (size + 1);
+            long end = targetsStart + 4L * edgeAmount;
+            if (channel.size() != end) {
+                throw new IllegalArgumentException(filename + " should be " + end + " bytes long for its header, but is " + channel.size() + ".");
+            }
+
+            MappedCsrGraph graph = new MappedCsrGraph(IntChunks.map(channel, idsStart, size),
+                    IntChunks.map(channel, offsetsStart, size + 1L), IntChunks.map(channel, targetsStart, edgeAmount),
+                    size, edgeAmount);
+            if (graph.edgeStart(0) != 0 || graph.edgeEnd(size - 1) != edgeAmount) {
+                throw new IllegalArgumentException(filename + " has offsets that don't match its amount of edges.");
+            }
+            return graph;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Saves any graph in the binary format, taking a CsrGraph snapshot of it first if it isn't one already
+     * @param graph The graph to save
+     * @param filename Path of the file, which is overwritten if it exists
+     * @return true if the file was written
+     */
+    public static boolean write(Graph graph, String filename) {
+        CsrGraph snapshot = CsrGraph.of(graph);
+        int n = snapshot.getSize();
+        int m = snapshot.getEdgeAmount();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * WRITE_BATCH).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+
+            for (int i = 0; i < n; i++) buffer = putInt(channel, buffer, snapshot.idAt(i));
+            for (int i = 0; i < n; i++) buffer = putInt(channel, buffer, snapshot.edgeStart(i));
+            buffer = putInt(channel, buffer, m);
+            for (int e = 0; e < m; e++) buffer = putInt(channel, buffer, snapshot.targetAt(e));
+
+            drain(channel, buffer);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (!buffer.hasRemaining()) drain(channel, buffer);
+        return buffer.putInt(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public int idAt(int index) {
+        return this.ids.get(index);
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return this.offsets.get(index);
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return this.offsets.get(index + 1);
+    }
+
+    @Override
+    public int targetAt(int edge) {
+        return this.targets.get(edge);
+    }
+
+    @Override
+    public int getEdgeAmount() {
+        return this.edgeAmount;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+}
@@ -0,0 +1,20 @@
+package graph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Read-only, live view over the IDs a node points towards. Unlike Node.getNeighbours() it doesn't copy anything,
+ * so it is the one to use inside traversals: iterate with an index from 0 to size() - 1 and nothing is allocated.
+ * The view must not be kept around while the graph it belongs to is being modified
+ */
+
+public interface NeighbourView {
+    int size();
+
+    /**
+     * @param position A number from 0 to size() - 1; positions have no meaning besides iterating the view
+     * @return The ID of the neighbour at that position
+     */
+    int get(int position);
+
+    boolean contains(int id);
+}
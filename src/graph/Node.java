@@ -9,5 +9,8 @@ import java.util.Set;
 public interface Node {
     int getId();
     boolean addNeighbour(Edge edge);
+    /* Returns a copy of the neighbours' IDs, which the caller is free to modify. */
     Set<Integer> getNeighbours();
+    /* Returns a read-only view of the neighbours' IDs that copies nothing; see NeighbourView. */
+    NeighbourView getNeighbourView();
 }
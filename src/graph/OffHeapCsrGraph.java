@@ -0,0 +1,183 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * CsrGraph whose IDs, offsets and targets live outside of the heap, in direct buffers (see IntChunks), for graphs
+ * whose adjacency doesn't fit in the heap, or would make every full GC scan it. The heap holds a few objects per
+ * chunk of 64 MB no matter how big the graph is, so GC pauses don't grow with it; the memory is bounded by
+ * -XX:MaxDirectMemorySize instead (by default as much as the maximum heap size).
+ * A Builder takes the edges a batch at a time, keeping them off the heap as well, so loading a graph needs no heap
+ * at all per edge, only a few dozen bytes per node (the set of IDs seen and the degrees), against the hundreds per
+ * edge of a CapGraph. MappedGraphLoader.loadOffHeap feeds one straight from a text file.
+ * The result is immutable and answers every query of the Graph interface like any other CsrGraph
+ */
+
+public final class OffHeapCsrGraph extends CsrGraph {
+    private final IntChunks ids;
+    private final IntChunks offsets;
+    private final IntChunks targets;
+    private final int size;
+    private final int edgeAmount;
+
+    private OffHeapCsrGraph(IntChunks ids, IntChunks offsets, IntChunks targets, int size, int edgeAmount) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.size = size;
+        this.edgeAmount = edgeAmount;
+    }
+
+    /**
+     * Copies any graph off the heap, through a CsrGraph snapshot if it isn't one already
+     */
+    public static OffHeapCsrGraph of(Graph graph) {
+        CsrGraph snapshot = CsrGraph.of(graph);
+        int n = snapshot.getSize();
+        int m = snapshot.getEdgeAmount();
+        IntChunks ids = IntChunks.allocate(n);
+        IntChunks offsets = IntChunks.allocate(n + 1L);
+        IntChunks targets = IntChunks.allocate(m);
+        for (int i = 0; i < n; i++) {
+            ids.set(i, snapshot.idAt(i));
+            offsets.set(i, snapshot.edgeStart(i));
+        }
+        offsets.set(n, m);
+        for (int e = 0; e < m; e++) targets.set(e, snapshot.targetAt(e));
+        return new OffHeapCsrGraph(ids, offsets, targets, n, m);
+    }
+
+    @Override
+    public int idAt(int index) {
+        return this.ids.get(index);
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return this.offsets.get(index);
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return this.offsets.get(index + 1);
+    }
+
+    @Override
+    public int targetAt(int edge) {
+        return this.targets.get(edge);
+    }
+
+    @Override
+    public int getEdgeAmount() {
+        return this.edgeAmount;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Collects edges into an OffHeapCsrGraph. Edges are kept in direct buffers as they come and only the set of
+     * node IDs seen is kept in the heap; build then lays the CSR out off the heap too, with the same result as
+     * CsrGraph.fromEdges: rows sorted and repeated edges dropped
+     */
+    public static final class Builder {
+        private final int shift;
+        private IntChunks from;
+        private IntChunks to;
+        private int count;
+        private final IntHashSet nodes;
+
+        public Builder() {
+            this(IntChunks.DEFAULT_SHIFT);
+        }
+
+        /**
+         * @param shift Chunks hold 2^shift ints each; small ones are only useful to test the chunk boundaries
+         */
+        Builder(int shift) {
+            this.shift = shift;
+            this.from = IntChunks.allocate(0, shift);
+            this.to = IntChunks.allocate(0, shift);
+            this.nodes = new IntHashSet();
+        }
+
+        public Builder addEdge(int from, int to) {
+            if (this.from == null) throw new IllegalStateException("The graph of this builder was already built");
+            if (this.count == Integer.MAX_VALUE) throw new IllegalStateException("A CsrGraph can't hold more than " + Integer.MAX_VALUE + " edges");
+            if (this.count == this.from.length()) {
+                long capacity = Math.min(Integer.MAX_VALUE, Math.max(16, 2L * this.count));
+                this.from.grow(capacity);
+                this.to.grow(capacity);
+            }
+            this.from.set(this.count, from);
+            this.to.set(this.count++, to);
+            this.nodes.add(from);
+            this.nodes.add(to);
+            return this;
+        }
+
+        /**
+         * Adds the first count edges of two arrays, one with the origins and one with the destinations
+         */
+        public Builder addEdges(int[] from, int[] to, int count) {
+            for (int i = 0; i < count; i++) addEdge(from[i], to[i]);
+            return this;
+        }
+
+        /**
+         * The edges collected are dropped, so the builder can't be used again
+         */
+        public OffHeapCsrGraph build() {
+            if (this.from == null) throw new IllegalStateException("The graph of this builder was already built");
+            int n = this.nodes.size();
+            int[] sortedIds = new int[n];
+            for (int i = 0; i < n; i++) sortedIds[i] = this.nodes.get(i);
+            Arrays.sort(sortedIds);
+
+            IntChunks ids = IntChunks.allocate(n, this.shift);
+            for (int i = 0; i < n; i++) ids.set(i, sortedIds[i]);
+
+            // The IDs of every edge are swapped for dense indices in place, so each is only searched for once
+            int[] degrees = new int[n];
+            for (int i = 0; i < this.count; i++) {
+                int origin = Arrays.binarySearch(sortedIds, this.from.get(i));
+                this.from.set(i, origin);
+                this.to.set(i, Arrays.binarySearch(sortedIds, this.to.get(i)));
+                degrees[origin]++;
+            }
+
+            IntChunks offsets = IntChunks.allocate(n + 1L, this.shift);
+            int[] next = new int[n];
+            int maxDegree = 0;
+            for (int node = 0, offset = 0; node < n; node++) {
+                next[node] = offset;
+                offset += degrees[node];
+                maxDegree = Math.max(maxDegree, degrees[node]);
+            }
+            IntChunks targets = IntChunks.allocate(this.count, this.shift);
+            for (int i = 0; i < this.count; i++) targets.set(next[this.from.get(i)]++, this.to.get(i));
+            this.from = null;
+            this.to = null;
+
+            // Rows are sorted in a reused heap array and written back without repeated edges, compacting the targets
+            int[] row = new int[maxDegree];
+            int edge = 0;
+            int start = 0;
+            for (int node = 0; node < n; node++) {
+                int degree = degrees[node];
+                for (int i = 0; i < degree; i++) row[i] = targets.get(start + i);
+                Arrays.sort(row, 0, degree);
+                offsets.set(node, edge);
+                for (int i = 0; i < degree; i++) {
+                    if (i == 0 || row[i] != row[i - 1]) targets.set(edge++, row[i]);
+                }
+                start += degree;
+            }
+            offsets.set(n, edge);
+            return new OffHeapCsrGraph(ids, offsets, targets, n, edge);
+        }
+    }
+}
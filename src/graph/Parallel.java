@@ -0,0 +1,58 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The plumbing shared by every class that splits its work over a pool of threads: checking the parallelism asked for,
+ * creating the pool and waiting for the tasks. It is public only so graph.pregel can use it too
+ */
+
+public final class Parallel {
+
+    private Parallel() {}
+
+    /**
+     * @return The parallelism, once checked to be at least one
+     */
+    public static int checkParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be at least one, got " + parallelism);
+        return parallelism;
+    }
+
+    /**
+     * @param name Name given to every thread of the pool
+     * @return A fixed-size pool of daemon threads, so a computation abandoned by an exception never keeps the JVM alive
+     */
+    public static ExecutorService daemonPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for every future, in order
+     * @param task What the tasks are doing, for the messages of the exceptions (e.g. "counting the triangles")
+     * @return The results of the futures, in the same order
+     * @throws IllegalStateException if a task failed, with its exception as the cause, or if the thread is interrupted
+     */
+    public static <T> List<T> await(List<? extends Future<? extends T>> futures, String task) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<? extends T> future : futures) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while " + task, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A worker failed while " + task, e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,284 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Parallel strongly connected components, in the stages of Hong, Rodia and Olukotun (2013), which target exactly the
+ * shape of social graphs: one giant component plus a great many trivial ones.
+ * 1. Trimming: a node with no incoming or no outgoing edge among the remaining nodes is a component on its own; it is
+ * removed and its neighbours' degrees updated, in parallel rounds until no node is left to trim.
+ * 2. Forward-backward: the nodes reachable both from and to a pivot of high degree form its component, which is most
+ * likely the giant one. Both reachability searches are parallel level-synchronous BFS.
+ * 3. What's left can only form components inside the sets reached forwards only, backwards only or neither, so it is
+ * split in weakly connected groups within those sets, and the groups are handed to threads running Tarjan on them.
+ * Each node is labelled with a member of its component, so the result doesn't depend on how the threads interleave
+ */
+
+final class ParallelSCC {
+    private static final int NODES_PER_TASK = 4096;
+
+    private ParallelSCC() {
+    }
+
+    /**
+     * @return For each dense index, the dense index of a member of its component (the same one for every member)
+     */
+    static int[] findSCCs(CsrGraph graph, int parallelism) {
+        int n = graph.getSize();
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        if (n == 0) return labels;
+
+        CsrGraph transposed = (CsrGraph) graph.transposeGraph();
+        ExecutorService pool = Parallel.daemonPool("scc-worker", parallelism);
+        try {
+            trim(graph, transposed, labels, pool, parallelism);
+
+            int pivot = pickPivot(graph, transposed, labels);
+            if (pivot < 0) return labels;
+            AtomicIntegerArray forward = reach(graph, pivot, labels, pool, parallelism);
+            AtomicIntegerArray backward = reach(transposed, pivot, labels, pool, parallelism);
+
+            // Remaining nodes are coloured by which of the two searches reached them; components never span colours
+            int[] groups = new int[n];
+            for (int node = 0; node < n; node++) {
+                if (labels[node] >= 0) groups[node] = -1;
+                else if (forward.get(node) == 1 && backward.get(node) == 1) {
+                    labels[node] = pivot;
+                    groups[node] = -1;
+                }
+                else groups[node] = forward.get(node) + 2 * backward.get(node);
+            }
+
+            tarjanByGroup(graph, labels, groups, pool, parallelism);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        return labels;
+    }
+
+    /**
+     * Labels every node that trimming removes with its own index
+     */
+    private static void trim(CsrGraph graph, CsrGraph transposed, int[] labels, ExecutorService pool, int parallelism) {
+        int n = graph.getSize();
+        int[] outDegrees = new int[n];
+        int[] inDegrees = new int[n];
+        int[] firstRound = concat(forRanges(pool, parallelism, n, (from, to) -> {
+            IntList candidates = new IntList();
+            for (int node = from; node < to; node++) {
+                outDegrees[node] = degreeWithoutLoops(graph, node);
+                inDegrees[node] = degreeWithoutLoops(transposed, node);
+                if (outDegrees[node] == 0 || inDegrees[node] == 0) candidates.add(node);
+            }
+            return candidates.toArray();
+        }));
+
+        AtomicIntegerArray outDegree = new AtomicIntegerArray(outDegrees);
+        AtomicIntegerArray inDegree = new AtomicIntegerArray(inDegrees);
+        AtomicIntegerArray trimmed = new AtomicIntegerArray(n);
+        for (int node : firstRound) trimmed.lazySet(node, 1);
+        int[] round = firstRound;
+
+        while (round.length > 0) {
+            int[] current = round;
+            List<int[]> found = forRanges(pool, parallelism, current.length, (from, to) -> {
+                IntList next = new IntList();
+                for (int i = from; i < to; i++) {
+                    int node = current[i];
+                    for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                        int neighbour = graph.targetAt(e);
+                        if (neighbour != node && inDegree.decrementAndGet(neighbour) == 0 && trimmed.compareAndSet(neighbour, 0, 1)) next.add(neighbour);
+                    }
+                    for (int e = transposed.edgeStart(node); e < transposed.edgeEnd(node); e++) {
+                        int neighbour = transposed.targetAt(e);
+                        if (neighbour != node && outDegree.decrementAndGet(neighbour) == 0 && trimmed.compareAndSet(neighbour, 0, 1)) next.add(neighbour);
+                    }
+                }
+                return next.toArray();
+            });
+            for (int node : current) labels[node] = node;
+            round = concat(found);
+        }
+    }
+
+    private static int degreeWithoutLoops(CsrGraph graph, int node) {
+        int degree = graph.degreeAt(node);
+        return graph.edgeIndexOf(node, node) >= 0 ? degree - 1 : degree;
+    }
+
+    /**
+     * @return The remaining node with the highest product of in and out degree, or -1 if every node was trimmed
+     */
+    private static int pickPivot(CsrGraph graph, CsrGraph transposed, int[] labels) {
+        int pivot = -1;
+        long best = -1;
+        for (int node = 0; node < labels.length; node++) {
+            if (labels[node] >= 0) continue;
+            long product = (long) graph.degreeAt(node) * transposed.degreeAt(node);
+            if (product > best) {
+                pivot = node;
+                best = product;
+            }
+        }
+        return pivot;
+    }
+
+    /**
+     * Level-synchronous BFS over the nodes without a label: each level's frontier is split among the threads, and a
+     * node is claimed by whichever thread marks it first
+     * @return 1 for every node reached from the source, 0 for the rest
+     */
+    private static AtomicIntegerArray reach(CsrGraph graph, int source, int[] labels, ExecutorService pool, int parallelism) {
+        AtomicIntegerArray reached = new AtomicIntegerArray(graph.getSize());
+        reached.set(source, 1);
+        int[] frontier = {source};
+
+        while (frontier.length > 0) {
+            int[] current = frontier;
+            frontier = concat(forRanges(pool, parallelism, current.length, (from, to) -> {
+                IntList next = new IntList();
+                for (int i = from; i < to; i++) {
+                    int node = current[i];
+                    for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                        int neighbour = graph.targetAt(e);
+                        if (labels[neighbour] < 0 && reached.get(neighbour) == 0 && reached.compareAndSet(neighbour, 0, 1)) next.add(neighbour);
+                    }
+                }
+                return next.toArray();
+            }));
+        }
+
+        return reached;
+    }
+
+    /**
+     * Splits the unlabelled nodes in weakly connected groups of a single colour, with a union-find over the edges
+     * (near linear, so it's done in the calling thread), and runs Tarjan on batches of groups in parallel
+     * @param groups Colour of every unlabelled node, -1 for the labelled ones; replaced by the group of each node
+     */
+    private static void tarjanByGroup(CsrGraph graph, int[] labels, int[] groups, ExecutorService pool, int parallelism) {
+        int n = graph.getSize();
+        int[] parents = new int[n];
+        for (int node = 0; node < n; node++) parents[node] = node;
+        for (int node = 0; node < n; node++) {
+            if (groups[node] < 0) continue;
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                int neighbour = graph.targetAt(e);
+                if (groups[neighbour] == groups[node]) union(parents, node, neighbour);
+            }
+        }
+
+        // Nodes sorted by group with a counting sort, so each group is a contiguous stretch
+        int[] starts = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            if (groups[node] >= 0) starts[find(parents, node) + 1]++;
+        }
+        for (int node = 0; node < n; node++) starts[node + 1] += starts[node];
+        int[] ordered = new int[starts[n]];
+        int[] next = Arrays.copyOf(starts, n);
+        for (int node = 0; node < n; node++) {
+            if (groups[node] >= 0) {
+                int root = find(parents, node);
+                ordered[next[root]++] = node;
+                groups[node] = root;
+            }
+        }
+
+        // Whole groups are batched together until a batch holds enough nodes to be worth a task
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int[] discovery = new int[n];
+        int[] lowest = new int[n];
+        Arrays.fill(discovery, -1);
+        int batchStart = 0;
+        for (int root = 0; root < n; root++) {
+            int end = starts[root + 1];
+            if (end - batchStart < NODES_PER_TASK && root < n - 1) continue;
+            if (end == batchStart) continue;
+            int from = batchStart;
+            tasks.add(() -> {
+                new SCC.Tarjan(graph, discovery, lowest, labels, groups, end - from).run(ordered, from, end, null);
+                return null;
+            });
+            batchStart = end;
+        }
+
+        runAll(pool, tasks);
+    }
+
+    private static int find(int[] parents, int node) {
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+
+    /**
+     * Splits 0..amount-1 in about four ranges per thread and runs the body on each
+     * @return What each range returned, in order of range
+     */
+    private static List<int[]> forRanges(ExecutorService pool, int parallelism, int amount, RangeBody body) {
+        int ranges = Math.max(1, Math.min(amount / 1024, 4 * parallelism));
+        if (ranges == 1) return Collections.singletonList(body.run(0, amount));
+
+        List<Callable<int[]>> tasks = new ArrayList<>(ranges);
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) amount * r / ranges);
+            int to = (int) ((long) amount * (r + 1) / ranges);
+            tasks.add(() -> body.run(from, to));
+        }
+        return runAll(pool, tasks);
+    }
+
+    private static <T> List<T> runAll(ExecutorService pool, List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) futures.add(pool.submit(task));
+        return Parallel.await(futures, "finding the strongly connected components");
+    }
+
+    private static int[] concat(List<int[]> parts) {
+        if (parts.size() == 1) return parts.get(0);
+        int size = 0;
+        for (int[] part : parts) size += part.length;
+        int[] all = new int[size];
+        int position = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, all, position, part.length);
+            position += part.length;
+        }
+        return all;
+    }
+
+    private interface RangeBody {
+        int[] run(int from, int to);
+    }
+
+    /**
+     * Growable list of ints, for what each thread finds
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, 2 * this.size);
+            this.values[this.size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package graph;
+
+import java.util.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Size-bounded LRU cache in front of the egonet and second level friends queries of a CapGraph, for callers that ask
+ * for the same popular users over and over. Results are handed out as they are cached, immutable, so a hit is a probe
+ * of a LongIntHashMap and a few array writes to move the entry to the front of the recency list (kept in int arrays
+ * by slot, not in nodes), and allocates nothing.
+ * Each entry has a weight (nodes plus edges of the egonet, size of the set), and the least recently used entries are
+ * evicted until the total fits the bound. The cache listens to the graph and drops exactly the entries a change can
+ * alter: for an edge from u to v, the egonet of u and the egonets that have both u and v among their nodes, and the
+ * second level friends of u and of every node with an edge to u. To find them without scanning the cache, every
+ * entry registers itself with the nodes that can trigger it (the nodes of the egonet; the node and its neighbours).
+ * A new vertex has no edges, so no cached result can change when one is added. Like CapGraph, it isn't thread-safe
+ */
+
+public class QueryCache implements GraphChangeListener {
+    private static final int EGONET = 0;
+    private static final int SECOND_LEVEL = 1;
+
+    private final CapGraph graph;
+    private final long maxWeight;
+    // (kind << 32 | id) -> slot of the entry
+    private final LongIntHashMap slots = new LongIntHashMap(-1);
+    // Node -> slots of the entries a change to its edges can alter
+    private final Map<Integer, IntHashSet> dependents = new HashMap<>();
+
+    // Entries by slot; free slots are chained through next
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int[] weights = new int[16];
+    private int[][] triggers = new int[16][];
+    private int[] previous = new int[16];
+    private int[] next = new int[16];
+    private int used;
+    private int free = -1;
+    // Most and least recently used entries
+    private int head = -1;
+    private int tail = -1;
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Registers the cache as a listener of the graph, until detach is called
+     * @param maxWeight Bound for the sum of the weights of the entries
+     */
+    public QueryCache(CapGraph graph, long maxWeight) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        if (maxWeight < 1) throw new IllegalArgumentException("The maximum weight must be at least one, got " + maxWeight);
+        this.graph = graph;
+        this.maxWeight = maxWeight;
+        graph.addChangeListener(this);
+    }
+
+    /**
+     * Stops listening to the graph and empties the cache
+     */
+    public void detach() {
+        this.graph.removeChangeListener(this);
+        clear();
+    }
+
+    /**
+     * @return The egonet of the center as an immutable snapshot (see CapGraph.getEgonet), empty if there is no such node
+     */
+    public CsrGraph getEgonet(int center) {
+        int slot = lookup(EGONET, center);
+        if (slot >= 0) return (CsrGraph) this.values[slot];
+
+        if (!this.graph.containsNode(center)) return CsrGraph.of(new CapGraph());
+        CsrGraph egonet = ((CapGraph) this.graph.getEgonet(center)).freeze();
+        int[] nodes = new int[egonet.getSize()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = egonet.idAt(i);
+        insert(EGONET, center, egonet, egonet.getSize() + egonet.getEdgeAmount(), nodes);
+        return egonet;
+    }
+
+    /**
+     * @return The second level friends of the node (see CapGraph.get2ndLevelFriends) in an unmodifiable set
+     */
+    @SuppressWarnings("unchecked")
+    public Set<Integer> get2ndLevelFriends(int id) {
+        int slot = lookup(SECOND_LEVEL, id);
+        if (slot >= 0) return (Set<Integer>) this.values[slot];
+
+        Set<Integer> friends = Collections.unmodifiableSet(this.graph.get2ndLevelFriends(id));
+        if (!this.graph.containsNode(id)) return friends;
+        NeighbourView neighbours = this.graph.getNode(id).getNeighbourView();
+        int[] nodes = new int[neighbours.size() + 1];
+        nodes[0] = id;
+        int amount = 1;
+        // A self-loop would list the node twice
+        for (int i = 0; i < neighbours.size(); i++) if (neighbours.get(i) != id) nodes[amount++] = neighbours.get(i);
+        insert(SECOND_LEVEL, id, friends, friends.size() + 1, Arrays.copyOf(nodes, amount));
+        return friends;
+    }
+
+    @Override
+    public void edgeAdded(int from, int to) {
+        invalidate(from, to);
+    }
+
+    @Override
+    public void edgeDeleted(int from, int to) {
+        invalidate(from, to);
+    }
+
+    private void invalidate(int from, int to) {
+        IntHashSet watching = this.dependents.get(from);
+        if (watching == null) return;
+
+        // Copied first, since removing an entry removes it from this very set
+        int[] candidates = new int[watching.size()];
+        for (int i = 0; i < candidates.length; i++) candidates[i] = watching.get(i);
+        for (int slot : candidates) {
+            long key = this.keys[slot];
+            int id = (int) key;
+            boolean affected = (int) (key >>> 32) == SECOND_LEVEL || id == from || ((CsrGraph) this.values[slot]).indexOf(to) >= 0;
+            if (affected) {
+                remove(slot);
+                this.invalidations++;
+            }
+        }
+    }
+
+    public void clear() {
+        while (this.head >= 0) remove(this.head);
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    public long getInvalidations() {
+        return this.invalidations;
+    }
+
+    public long getWeight() {
+        return this.weight;
+    }
+
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    public int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * @return The slot of the entry, moved to the front of the recency list, or -1 on a miss
+     */
+    private int lookup(int kind, int id) {
+        int slot = this.slots.get(key(kind, id));
+        if (slot < 0) {
+            this.misses++;
+            return -1;
+        }
+        this.hits++;
+        if (slot != this.head) {
+            unlink(slot);
+            linkFirst(slot);
+        }
+        return slot;
+    }
+
+    private void insert(int kind, int id, Object value, int entryWeight, int[] nodes) {
+        if (entryWeight > this.maxWeight) return;
+        while (this.weight + entryWeight > this.maxWeight) {
+            remove(this.tail);
+            this.evictions++;
+        }
+
+        int slot = allocate();
+        this.keys[slot] = key(kind, id);
+        this.values[slot] = value;
+        this.weights[slot] = entryWeight;
+        this.triggers[slot] = nodes;
+        this.slots.put(this.keys[slot], slot);
+        this.weight += entryWeight;
+        linkFirst(slot);
+        for (int node : nodes) this.dependents.computeIfAbsent(node, key -> new IntHashSet()).add(slot);
+    }
+
+    private void remove(int slot) {
+        unlink(slot);
+        this.slots.remove(this.keys[slot]);
+        this.weight -= this.weights[slot];
+        for (int node : this.triggers[slot]) {
+            IntHashSet watching = this.dependents.get(node);
+            if (watching == null) continue;
+            watching.remove(slot);
+            if (watching.isEmpty()) this.dependents.remove(node);
+        }
+        this.values[slot] = null;
+        this.triggers[slot] = null;
+        this.next[slot] = this.free;
+        this.free = slot;
+    }
+
+    private int allocate() {
+        if (this.free >= 0) {
+            int slot = this.free;
+            this.free = this.next[slot];
+            return slot;
+        }
+        if (this.used == this.keys.length) {
+            int capacity = this.used * 2;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+            this.triggers = Arrays.copyOf(this.triggers, capacity);
+            this.previous = Arrays.copyOf(this.previous, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        return this.used++;
+    }
+
+    private void linkFirst(int slot) {
+        this.previous[slot] = -1;
+        this.next[slot] = this.head;
+        if (this.head >= 0) this.previous[this.head] = slot;
+        this.head = slot;
+        if (this.tail < 0) this.tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = this.previous[slot];
+        int after = this.next[slot];
+        if (before >= 0) this.next[before] = after;
+        else this.head = after;
+        if (after >= 0) this.previous[after] = before;
+        else this.tail = before;
+    }
+
+    private static long key(int kind, int id) {
+        return (long) kind << 32 | (id & 0xFFFFFFFFL);
+    }
+}
@@ -1,105 +1,213 @@
 package graph;
 
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
 import java.util.*;
 
+/**
+ * @author Roy Gabriel Crivolotti
+ * Strongly connected components, found with Tarjan's algorithm in a single depth-first pass over a CsrGraph snapshot.
+ * The search is iterative, with its own call stack of (node, next edge) pairs in two int arrays, so a path as deep as
+ * the graph itself doesn't overflow the thread's stack, and no transposed graph is ever built.
+ * With a parallelism above one the work is split among threads instead (see ParallelSCC); the components are the same
+ * either way, only their numbering differs.
+ * The result is the component number of every node; the sub-graphs getSCCs returns are only built if it's called
+ */
+
 public class SCC {
+    private final CsrGraph snapshot;
+    // Component number of every dense index of the snapshot
+    private final int[] components;
+    private int componentAmount;
     private List<Graph> SCCs;
 
-    public SCC(CapGraph g) {
-        SCCs = findSCCs(g);
+    public SCC(Graph g) {
+        this(g, 1);
     }
 
     /**
-     * @return A copy of every strongly connected component in the Graph as a list of sub-graphs
+     * @param g The graph to decompose
+     * @param parallelism Amount of threads to use; with one, the sequential algorithm is used
      */
-    public List<Graph> findSCCs(CapGraph g) {
-        Stack<Integer> toExplore = new Stack<>();
-        toExplore.addAll(g.getNodes());
-        List<Integer> componentsIDList = new ArrayList<>();
-
-        Stack<Integer> finished = dfs(g, toExplore, componentsIDList);
-
-        Graph transposedGraph = g.transposeGraph();
+    public SCC(Graph g, int parallelism) {
+        if (g == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        Parallel.checkParallelism(parallelism);
+        GraphMetrics metrics = Metrics.current();
+        long start = metrics == null ? 0L : System.nanoTime();
+        this.snapshot = CsrGraph.of(g);
+
+        if (parallelism == 1) this.components = findSCCs(this.snapshot);
+        else {
+            this.components = ParallelSCC.findSCCs(this.snapshot, parallelism);
+            this.componentAmount = Communities.compact(this.components);
+        }
+        if (metrics != null) metrics.sccsFound(this.snapshot.getSize(), this.componentAmount, parallelism, System.nanoTime() - start);
+    }
 
-        componentsIDList.clear();
-        List<Graph> SCCList = findSCCsDFS(transposedGraph, finished, componentsIDList, g);
+    /**
+     * Components are numbered in the order Tarjan's algorithm completes them, which is a reverse topological order of
+     * the condensed graph: no edge goes from a component to one with a higher number
+     */
+    private int[] findSCCs(CsrGraph graph) {
+        int n = graph.getSize();
+        int[] discovery = new int[n];
+        int[] labels = new int[n];
+        Arrays.fill(discovery, -1);
+        Arrays.fill(labels, -1);
+        int[] roots = new int[n];
+        for (int node = 0; node < n; node++) roots[node] = node;
+
+        int[] completed = new int[n];
+        this.componentAmount = new Tarjan(graph, discovery, new int[n], labels, null, n).run(roots, 0, n, completed);
+
+        // Each node is labelled with the root of its component; the roots are renumbered in order of completion
+        int[] numbers = new int[n];
+        for (int c = 0; c < this.componentAmount; c++) numbers[completed[c]] = c;
+        for (int node = 0; node < n; node++) labels[node] = numbers[labels[node]];
+        return labels;
+    }
 
-        return SCCList;
+    public int getComponentAmount() {
+        return this.componentAmount;
     }
 
     /**
-     * @param graph The graph to traverse
-     * @param toExplore Stack of ints to explore –in order–
-     * @param SCCList List of SCC; it's filled when iterating on the original
-     * graph and the transposed, but cleared in the first case
-     * @return Stack of ints i the order in which they were finished
+     * @param id ID of a node
+     * @return The number of its component, from 0 to getComponentAmount() - 1, or -1 if there is no such node
      */
-    private Stack<Integer> dfs(Graph graph, Stack<Integer> toExplore, List<Integer> SCCList) {
-        Set<Integer> visited = new HashSet<>();
-        Stack<Integer> finished = new Stack<>();
+    public int getComponent(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? -1 : this.components[index];
+    }
 
-        while (!toExplore.isEmpty()) {
-            int currNodeID = toExplore.pop();
-            if (!visited.contains(currNodeID)) dfsVisit(graph, currNodeID, visited, finished, SCCList);
-        }
+    /**
+     * @return The component number of every node, indexed by the dense indices of getSnapshot(); in the sequential
+     * mode they are in reverse topological order, in the parallel one they are in order of their lowest dense index
+     */
+    public int[] getComponents() {
+        return this.components.clone();
+    }
 
-        return finished;
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
     }
 
     /**
-     * @param graph The graph to explore
-     * @param toExplore The stack of vertices to explore –in order–
-     * @param componentsIDList List of node's IDs in each SCC; keeps track of each sub-graph's components
-     * @return List of sub-graphs, each a strongly connected component
+     * The sub-graphs are built on the first call only. As before, each one has the nodes of a component and every
+     * edge leaving them, the ones pointing outside of the component included
+     * @return A copy of every strongly connected component in the Graph as a list of sub-graphs
      */
-    private List<Graph> findSCCsDFS(Graph graph, Stack<Integer> toExplore, List<Integer> componentsIDList, CapGraph g) {
-        List<Graph> SCCList = new ArrayList<>();
-        Set<Integer> visited = new HashSet<>();
-        Stack<Integer> finished = new Stack<>();
-
-        while (!toExplore.isEmpty()) {
-            int currNodeID = toExplore.pop();
-            Graph currGraph = new CapGraph();
-            if (!visited.contains(currNodeID)) {
-                currGraph.addVertex(currNodeID);
-                dfsVisit(graph, currNodeID, visited, finished, componentsIDList);
-                toExplore.removeAll(componentsIDList);
-            }
+    public List<Graph> getSCCs() {
+        if (this.SCCs != null) return this.SCCs;
 
-            for (int id : componentsIDList) {
-                currGraph.addVertex(id);
-                for (int neighbourID : g.getNode(id).getNeighbours()) {
-                    currGraph.addEdge(id, neighbourID);
-                }
-            }
+        CapGraph[] subgraphs = new CapGraph[this.componentAmount];
+        for (int c = 0; c < this.componentAmount; c++) subgraphs[c] = new CapGraph();
+        for (int node = 0; node < this.components.length; node++) subgraphs[this.components[node]].addVertex(this.snapshot.idAt(node));
 
-            SCCList.add(currGraph);
-            componentsIDList.clear();
+        for (int node = 0; node < this.components.length; node++) {
+            CapGraph subgraph = subgraphs[this.components[node]];
+            int id = this.snapshot.idAt(node);
+            for (int e = this.snapshot.edgeStart(node); e < this.snapshot.edgeEnd(node); e++) {
+                subgraph.addEdge(id, this.snapshot.idAt(this.snapshot.targetAt(e)));
+            }
         }
 
-        return SCCList;
+        this.SCCs = new ArrayList<>(Arrays.asList(subgraphs));
+        return this.SCCs;
     }
 
     /**
-     * Helper method to recursively visit the nodes's neighbours, adding them to the visited set
-     * Once a node with no unvisited neighbours is reached, it's pushed into the finished stack
-     * @param graph The graph on which DFS in being performed
-     * @param currNodeID The node at which DFS is at the moment of the call
-     * @param visited Set of already visited nodes
-     * @param finished Stack of finished nodes in order
-     * @param SCCList List of SCC
+     * Iterative Tarjan over some of the nodes of a snapshot. The per-node arrays are shared, so several searches over
+     * disjoint groups of nodes can run at the same time, each with its own stacks
      */
-    private void dfsVisit(Graph graph, int currNodeID, Set<Integer> visited, Stack<Integer> finished, List<Integer> SCCList) {
-        visited.add(currNodeID);
-        for (Integer currNodeNeighbour : ((CapGraph)graph).getNode(currNodeID).getNeighbours()) {
-            if (!visited.contains(currNodeNeighbour)) dfsVisit(graph, currNodeNeighbour, visited, finished, SCCList);
+    static final class Tarjan {
+        private final CsrGraph graph;
+        // Order in which each node was first reached (-1 if it wasn't yet), and the lowest of those reachable from it
+        private final int[] discovery;
+        private final int[] lowest;
+        // Dense index of the root of each node's component, or -1 while it isn't complete
+        private final int[] labels;
+        // Group of each node; edges between two groups are ignored. Null to follow every edge
+        private final int[] groups;
+        // Nodes visited whose component isn't complete yet
+        private final int[] open;
+        // The depth-first search's call stack: the node of each frame and the next of its edges to follow
+        private final int[] callNode;
+        private final int[] callEdge;
+        private int discovered;
+
+        /**
+         * @param capacity Amount of nodes the search will visit at most
+         */
+        Tarjan(CsrGraph graph, int[] discovery, int[] lowest, int[] labels, int[] groups, int capacity) {
+            this.graph = graph;
+            this.discovery = discovery;
+            this.lowest = lowest;
+            this.labels = labels;
+            this.groups = groups;
+            this.open = new int[capacity];
+            this.callNode = new int[capacity];
+            this.callEdge = new int[capacity];
         }
 
-        finished.push(currNodeID);
-        SCCList.add(currNodeID);
-    }
+        /**
+         * Searches from every root not visited yet, in order
+         * @param roots Dense indices, from position from (inclusive) to position to (exclusive)
+         * @param completed Where the root of each component is written in order of completion; may be null
+         * @return The amount of components completed
+         */
+        int run(int[] roots, int from, int to, int[] completed) {
+            int amount = 0;
+            int openSize = 0;
+
+            for (int r = from; r < to; r++) {
+                int root = roots[r];
+                if (this.discovery[root] >= 0) continue;
+
+                this.discovery[root] = this.lowest[root] = this.discovered++;
+                this.open[openSize++] = root;
+                this.callNode[0] = root;
+                this.callEdge[0] = this.graph.edgeStart(root);
+                int depth = 1;
+
+                while (depth > 0) {
+                    int node = this.callNode[depth - 1];
+                    int edge = this.callEdge[depth - 1];
+
+                    if (edge < this.graph.edgeEnd(node)) {
+                        this.callEdge[depth - 1] = edge + 1;
+                        int neighbour = this.graph.targetAt(edge);
+                        if (this.groups != null && this.groups[neighbour] != this.groups[node]) continue;
+                        if (this.discovery[neighbour] < 0) {
+                            this.discovery[neighbour] = this.lowest[neighbour] = this.discovered++;
+                            this.open[openSize++] = neighbour;
+                            this.callNode[depth] = neighbour;
+                            this.callEdge[depth++] = this.graph.edgeStart(neighbour);
+                        }
+                        // A visited neighbour without a component is still open, hence part of the current path's one
+                        else if (this.labels[neighbour] < 0) this.lowest[node] = Math.min(this.lowest[node], this.discovery[neighbour]);
+                        continue;
+                    }
+
+                    depth--;
+                    if (this.lowest[node] == this.discovery[node]) {
+                        int member;
+                        do {
+                            member = this.open[--openSize];
+                            this.labels[member] = node;
+                        } while (member != node);
+                        if (completed != null) completed[amount] = node;
+                        amount++;
+                    }
+                    if (depth > 0) {
+                        int parent = this.callNode[depth - 1];
+                        this.lowest[parent] = Math.min(this.lowest[parent], this.lowest[node]);
+                    }
+                }
+            }
 
-    public List<Graph> getSCCs() {
-        return this.SCCs;
+            return amount;
+        }
     }
 }
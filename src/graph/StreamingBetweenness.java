@@ -0,0 +1,436 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Vertex and edge betweenness kept up to date while edges are added to and deleted from a CapGraph, in the spirit of
+ * Green, McColl and Bader's streaming betweenness (2012): the BFS of every source is kept (its distances and amounts
+ * of shortest paths, twelve bytes per node and source), and a change only touches the sources whose shortest paths
+ * go through it. Inserting u -> v matters to a source only if it reaches u and v is not closer to it than u is;
+ * deleting u -> v only if the edge was on its shortest paths, that is if v is exactly one level below u. Every other
+ * source, usually most of them once the graph is well connected, is skipped without even looking at its edges.
+ * An affected source has its old dependencies taken back out of the scores, from its stored BFS, and its new ones
+ * added after searching again. Green et al. go further and repair the BFS of each affected source in place; searching
+ * again keeps the code simple and is still far less than recomputing every source.
+ * Keeping every source costs O(n^2) memory, so for large graphs the maintainer keeps a fixed sample of sources
+ * instead, as BrandesBetweenness.withSampling does, and scales the scores by n/k when they are read.
+ * The scores are queryable at any time; since they are the result of many additions and subtractions, they drift
+ * from the exact ones by rounding errors, which recompute() clears
+ */
+
+public class StreamingBetweenness implements GraphChangeListener {
+    private static final int UNREACHED = -1;
+
+    private final CapGraph graph;
+    private final boolean everySource;
+
+    // Dense index of every node ID, and the other way around; nodes are never removed
+    private final LongIntHashMap indices;
+    private int[] ids;
+    private int size;
+    // Out-neighbours of every node, by dense index, each with the id of its edge in the edge index next to it so
+    // the scores are updated without a single lookup; unordered, a deleted neighbour's place is taken by the last one
+    private int[][] targets;
+    private int[][] targetEdges;
+    private int[] degrees;
+
+    // Dense indices of the sources, and the BFS of each of them
+    private int[] sources;
+    private int[][] distances;
+    private double[][] paths;
+    private int sourceAmount;
+
+    private double[] vertexScores;
+    private final EdgeIndex edges;
+    private double[] edgeScores;
+
+    // Scratch arrays of the updates: the nodes reached from a source in BFS order, their dependencies, and the
+    // sources a change affects
+    private int[] order;
+    private double[] dependency;
+    private int[] affected;
+    private long sourcesUpdated;
+
+    /**
+     * Keeps the exact scores, with every node (the ones added later too) as a source
+     * @param graph The graph to follow; the maintainer adds itself as a listener of it
+     */
+    public StreamingBetweenness(CapGraph graph) {
+        this(graph, 0, 0L);
+    }
+
+    /**
+     * @param graph The graph to follow; the maintainer adds itself as a listener of it
+     * @param sampleSize Amount of sources to keep, drawn among the nodes the graph has now; zero to keep every node
+     * @param seed Seed of the generator that picks the sources
+     */
+    public StreamingBetweenness(CapGraph graph, int sampleSize, long seed) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        if (sampleSize < 0) throw new IllegalArgumentException("The sample size can't be negative, got " + sampleSize);
+        this.graph = graph;
+        this.indices = new LongIntHashMap(-1);
+        this.edges = new EdgeIndex();
+
+        CsrGraph snapshot = graph.freeze();
+        int n = snapshot.getSize();
+        int capacity = Math.max(16, n);
+        this.ids = new int[capacity];
+        this.targets = new int[capacity][];
+        this.targetEdges = new int[capacity][];
+        this.degrees = new int[capacity];
+        this.vertexScores = new double[capacity];
+        this.order = new int[capacity];
+        this.dependency = new double[capacity];
+        for (int node = 0; node < n; node++) {
+            this.ids[node] = snapshot.idAt(node);
+            this.indices.put(snapshot.idAt(node), node);
+            int degree = snapshot.degreeAt(node);
+            this.targets[node] = new int[Math.max(4, degree)];
+            this.targetEdges[node] = new int[Math.max(4, degree)];
+            this.degrees[node] = degree;
+            for (int e = snapshot.edgeStart(node); e < snapshot.edgeEnd(node); e++) {
+                int position = e - snapshot.edgeStart(node);
+                this.targets[node][position] = snapshot.targetAt(e);
+                this.targetEdges[node][position] = this.edges.add(new Edge(snapshot.idAt(node), snapshot.idAt(snapshot.targetAt(e))));
+            }
+        }
+        this.size = n;
+        this.edgeScores = new double[Math.max(16, this.edges.getCapacity())];
+
+        this.everySource = sampleSize == 0 || sampleSize >= n;
+        this.sources = this.everySource ? identity(capacity) : sample(n, sampleSize, seed);
+        this.sourceAmount = this.everySource ? n : sampleSize;
+        this.distances = new int[this.sources.length][];
+        this.paths = new double[this.sources.length][];
+        for (int i = 0; i < this.sourceAmount; i++) {
+            this.distances[i] = unreached(capacity);
+            this.paths[i] = new double[capacity];
+        }
+        this.affected = new int[this.sources.length];
+
+        recompute();
+        graph.addChangeListener(this);
+    }
+
+    /**
+     * Stops following the graph; the scores stay as they are
+     */
+    public void detach() {
+        this.graph.removeChangeListener(this);
+    }
+
+    /**
+     * Throws every score away and searches again from every source
+     */
+    public void recompute() {
+        Arrays.fill(this.vertexScores, 0.0);
+        Arrays.fill(this.edgeScores, 0.0);
+        for (int i = 0; i < this.sourceAmount; i++) {
+            clear(i, 0);
+            accumulate(i, search(i), 1.0);
+        }
+    }
+
+    @Override
+    public void vertexAdded(int id) {
+        indexOf(id);
+    }
+
+    @Override
+    public void edgeAdded(int from, int to) {
+        int u = indexOf(from);
+        int v = indexOf(to);
+        if (this.edges.contains(from, to)) return;
+
+        // Only sources for which v ends up with new shortest paths, or closer, are affected
+        int amount = 0;
+        for (int i = 0; i < this.sourceAmount; i++) {
+            int[] distance = this.distances[i];
+            if (distance[u] != UNREACHED && (distance[v] == UNREACHED || distance[v] > distance[u])) this.affected[amount++] = i;
+        }
+        update(amount, () -> {
+            int id = this.edges.add(new Edge(from, to));
+            if (id >= this.edgeScores.length) this.edgeScores = Arrays.copyOf(this.edgeScores, this.edgeScores.length * 2);
+            if (this.degrees[u] == this.targets[u].length) {
+                this.targets[u] = Arrays.copyOf(this.targets[u], this.degrees[u] * 2);
+                this.targetEdges[u] = Arrays.copyOf(this.targetEdges[u], this.degrees[u] * 2);
+            }
+            this.targets[u][this.degrees[u]] = v;
+            this.targetEdges[u][this.degrees[u]++] = id;
+        });
+    }
+
+    @Override
+    public void edgeDeleted(int from, int to) {
+        int u = this.indices.get(from);
+        int v = this.indices.get(to);
+        if (u < 0 || v < 0 || !this.edges.contains(from, to)) return;
+
+        // Only sources with the edge on their shortest paths are affected
+        int amount = 0;
+        for (int i = 0; i < this.sourceAmount; i++) {
+            int[] distance = this.distances[i];
+            if (distance[u] != UNREACHED && distance[v] == distance[u] + 1) this.affected[amount++] = i;
+        }
+        update(amount, () -> {
+            int id = this.edges.remove(from, to);
+            this.edgeScores[id] = 0.0;
+            int last = --this.degrees[u];
+            for (int k = 0; k <= last; k++) {
+                if (this.targetEdges[u][k] != id) continue;
+                this.targets[u][k] = this.targets[u][last];
+                this.targetEdges[u][k] = this.targetEdges[u][last];
+                break;
+            }
+        });
+    }
+
+    /**
+     * @return The betweenness of the node (estimated if only a sample of sources is kept), or -1 if there is no
+     * such node
+     */
+    public double getVertexBetweenness(int id) {
+        int index = this.indices.get(id);
+        return index < 0 ? -1.0 : this.vertexScores[index] * scale();
+    }
+
+    /**
+     * @return The betweenness of the edge (estimated if only a sample of sources is kept), or zero if there is no
+     * such edge
+     */
+    public double getEdgeBetweenness(int from, int to) {
+        int id = this.edges.idOf(from, to);
+        return id < 0 ? 0.0 : this.edgeScores[id] * scale();
+    }
+
+    /**
+     * @return A new Edge object with the IDs of the edge with the highest score, or null if no edge has a positive
+     * score; ties are broken by the order in which the edges were added
+     */
+    public Edge getHighestScoringEdge() {
+        int best = -1;
+        for (int id = 0; id < this.edges.getCapacity(); id++) {
+            if (this.edges.get(id) != null && this.edgeScores[id] > 0.0 && (best < 0 || this.edgeScores[id] > this.edgeScores[best])) best = id;
+        }
+        if (best < 0) return null;
+        Edge edge = this.edges.get(best);
+        return new Edge(edge.getFrom(), edge.getTo());
+    }
+
+    /**
+     * @return The amount of sources kept
+     */
+    public int getSampleSize() {
+        return this.sourceAmount;
+    }
+
+    /**
+     * @return How many times a source has been searched again because of a change, over the whole life of this object
+     */
+    public long getSourcesUpdated() {
+        return this.sourcesUpdated;
+    }
+
+    /**
+     * Takes the dependencies of the affected sources out of the scores, applies the change to the adjacency, and adds
+     * the dependencies they have after it
+     */
+    private void update(int amount, Runnable change) {
+        for (int a = 0; a < amount; a++) {
+            int i = this.affected[a];
+            int reached = reached(i);
+            accumulate(i, reached, -1.0);
+            clear(i, reached);
+        }
+        change.run();
+        for (int a = 0; a < amount; a++) {
+            int i = this.affected[a];
+            accumulate(i, search(i), 1.0);
+        }
+        this.sourcesUpdated += amount;
+    }
+
+    /**
+     * BFS from the source, storing the distances and amounts of shortest paths; the arrays must be cleared
+     * @return The amount of nodes reached, which are left in the order array in BFS order
+     */
+    private int search(int i) {
+        int source = this.sources[i];
+        int[] distance = this.distances[i];
+        double[] amountOfShortestPaths = this.paths[i];
+
+        distance[source] = 0;
+        amountOfShortestPaths[source] = 1.0;
+        this.order[0] = source;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int prevNode = this.order[head++];
+            int nextDistance = distance[prevNode] + 1;
+            int[] next = this.targets[prevNode];
+            for (int j = 0, degree = this.degrees[prevNode]; j < degree; j++) {
+                int neighbour = next[j];
+                if (distance[neighbour] == UNREACHED) {
+                    distance[neighbour] = nextDistance;
+                    this.order[tail++] = neighbour;
+                }
+                if (distance[neighbour] == nextDistance) amountOfShortestPaths[neighbour] += amountOfShortestPaths[prevNode];
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Lists the nodes the stored BFS of the source reached, in BFS order, by walking its shortest path DAG again
+     * @return The amount of nodes reached, which are left in the order array
+     */
+    private int reached(int i) {
+        int source = this.sources[i];
+        int[] distance = this.distances[i];
+
+        // Each node is listed when the first of its parents reaches it; its dependency is used to mark it meanwhile
+        this.order[0] = source;
+        this.dependency[source] = 1.0;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int prevNode = this.order[head++];
+            int nextDistance = distance[prevNode] + 1;
+            int[] next = this.targets[prevNode];
+            for (int j = 0, degree = this.degrees[prevNode]; j < degree; j++) {
+                int neighbour = next[j];
+                if (distance[neighbour] == nextDistance && this.dependency[neighbour] == 0.0) {
+                    this.dependency[neighbour] = 1.0;
+                    this.order[tail++] = neighbour;
+                }
+            }
+        }
+        for (int j = 0; j < tail; j++) this.dependency[this.order[j]] = 0.0;
+        return tail;
+    }
+
+    /**
+     * Back-propagation of the dependencies of the source, as in BrandesBetweenness, adding them (or taking them out,
+     * with a negative sign) to the scores
+     * @param reached Amount of nodes reached, in BFS order in the order array
+     */
+    private void accumulate(int i, int reached, double sign) {
+        int[] distance = this.distances[i];
+        double[] amountOfShortestPaths = this.paths[i];
+
+        for (int j = reached - 1; j >= 0; j--) {
+            int node = this.order[j];
+            int nextDistance = distance[node] + 1;
+            int[] next = this.targets[node];
+            int[] nextEdges = this.targetEdges[node];
+            double sum = 0.0;
+            for (int k = 0, degree = this.degrees[node]; k < degree; k++) {
+                int neighbour = next[k];
+                if (distance[neighbour] == nextDistance) {
+                    double edgeDependency = amountOfShortestPaths[node] / amountOfShortestPaths[neighbour] * (1.0 + this.dependency[neighbour]);
+                    this.edgeScores[nextEdges[k]] += sign * edgeDependency;
+                    sum += edgeDependency;
+                }
+            }
+            this.dependency[node] = sum;
+            if (j > 0) this.vertexScores[node] += sign * sum;
+        }
+        for (int j = 0; j < reached; j++) this.dependency[this.order[j]] = 0.0;
+    }
+
+    /**
+     * Resets the BFS of the source, only for the nodes in the order array if reached is positive, entirely otherwise
+     */
+    private void clear(int i, int reached) {
+        if (reached == 0) {
+            Arrays.fill(this.distances[i], UNREACHED);
+            Arrays.fill(this.paths[i], 0.0);
+            return;
+        }
+        for (int j = 0; j < reached; j++) {
+            this.distances[i][this.order[j]] = UNREACHED;
+            this.paths[i][this.order[j]] = 0.0;
+        }
+    }
+
+    /**
+     * @return The dense index of the node, which is added if it is new
+     */
+    private int indexOf(int id) {
+        int index = this.indices.get(id);
+        if (index >= 0) return index;
+
+        index = this.size++;
+        if (index == this.ids.length) grow(this.ids.length * 2);
+        this.ids[index] = id;
+        this.indices.put(id, index);
+        this.targets[index] = new int[4];
+        this.targetEdges[index] = new int[4];
+
+        // When every node is a source, a new node is one too; it reaches nothing but itself for now
+        if (this.everySource) {
+            this.distances[index] = unreached(this.ids.length);
+            this.paths[index] = new double[this.ids.length];
+            this.sourceAmount++;
+            search(index);
+        }
+        return index;
+    }
+
+    private void grow(int capacity) {
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.targets = Arrays.copyOf(this.targets, capacity);
+        this.targetEdges = Arrays.copyOf(this.targetEdges, capacity);
+        this.degrees = Arrays.copyOf(this.degrees, capacity);
+        this.vertexScores = Arrays.copyOf(this.vertexScores, capacity);
+        this.order = new int[capacity];
+        this.dependency = new double[capacity];
+        for (int i = 0; i < this.sourceAmount; i++) {
+            int previous = this.distances[i].length;
+            this.distances[i] = Arrays.copyOf(this.distances[i], capacity);
+            Arrays.fill(this.distances[i], previous, capacity, UNREACHED);
+            this.paths[i] = Arrays.copyOf(this.paths[i], capacity);
+        }
+        if (this.everySource) {
+            this.sources = identity(capacity);
+            this.distances = Arrays.copyOf(this.distances, capacity);
+            this.paths = Arrays.copyOf(this.paths, capacity);
+            this.affected = new int[capacity];
+        }
+    }
+
+    private double scale() {
+        return this.everySource ? 1.0 : (double) this.size / this.sourceAmount;
+    }
+
+    private static int[] identity(int n) {
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i++) identity[i] = i;
+        return identity;
+    }
+
+    private static int[] unreached(int n) {
+        int[] distance = new int[n];
+        Arrays.fill(distance, UNREACHED);
+        return distance;
+    }
+
+    /**
+     * The same sample BrandesBetweenness.withSampling draws for the same seed on the same nodes
+     */
+    private static int[] sample(int n, int k, long seed) {
+        int[] candidates = identity(n);
+        Random random = new Random(seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = candidates[i];
+            candidates[i] = candidates[j];
+            candidates[j] = swap;
+        }
+        int[] sources = Arrays.copyOf(candidates, k);
+        Arrays.sort(sources);
+        return sources;
+    }
+}
@@ -0,0 +1,222 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Triangles of the graph with edges taken as undirected, counted with compact-forward (Latapy, 2008): nodes are
+ * ranked by degree, each edge is kept only from its lower ranked end, and every triangle is then found exactly once,
+ * from its lowest ranked node, by merging two of those forward lists. Ranking by degree keeps the lists short on the
+ * hubs of social graphs, where counting from every node would intersect the same huge lists over and over.
+ * One pass gives the global count, the triangles of every node and so its local clustering coefficient. Nodes are
+ * split in ranges among threads, each adding into its own per-node counts, which are summed at the end
+ */
+
+public class TriangleCounter {
+    private static final int NODES_PER_TASK = 1024;
+
+    private final CsrGraph snapshot;
+    private final int[] degrees;
+    private final int[] triangles;
+    private final long triangleAmount;
+
+    public TriangleCounter(Graph graph) {
+        this(graph, 1);
+    }
+
+    /**
+     * @param graph A CapGraph, a frozen snapshot, or any other Graph
+     * @param parallelism Amount of threads counting at the same time
+     */
+    public TriangleCounter(Graph graph, int parallelism) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        Parallel.checkParallelism(parallelism);
+
+        this.snapshot = CsrGraph.of(graph);
+        CsrGraph undirected = this.snapshot.toUndirected();
+        int n = undirected.getSize();
+        this.degrees = new int[n];
+        for (int node = 0; node < n; node++) this.degrees[node] = undirected.degreeAt(node);
+
+        this.triangles = count(undirected, parallelism);
+        long amount = 0;
+        for (int count : this.triangles) amount += count;
+        // Each triangle was added to its three corners
+        this.triangleAmount = amount / 3;
+    }
+
+    public long getTriangleAmount() {
+        return this.triangleAmount;
+    }
+
+    /**
+     * @return The amount of triangles of every node, indexed by the dense indices of getSnapshot()
+     */
+    public int[] getTriangles() {
+        return this.triangles.clone();
+    }
+
+    /**
+     * @return The amount of triangles the node is part of, or -1 if there is no such node
+     */
+    public int getTriangles(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? -1 : this.triangles[index];
+    }
+
+    /**
+     * Local clustering coefficient: the fraction of the pairs of neighbours of a node that are neighbours themselves
+     * @return The coefficient, 0 for nodes with less than two neighbours, or -1 if there is no such node
+     */
+    public double getClustering(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? -1.0 : clustering(index);
+    }
+
+    /**
+     * @return The local clustering coefficient of every node, indexed by the dense indices of getSnapshot()
+     */
+    public double[] getClusteringCoefficients() {
+        double[] coefficients = new double[this.triangles.length];
+        for (int node = 0; node < coefficients.length; node++) coefficients[node] = clustering(node);
+        return coefficients;
+    }
+
+    /**
+     * @return The average of the local clustering coefficients (Watts and Strogatz)
+     */
+    public double getAverageClustering() {
+        if (this.triangles.length == 0) return 0.0;
+        double sum = 0.0;
+        for (int node = 0; node < this.triangles.length; node++) sum += clustering(node);
+        return sum / this.triangles.length;
+    }
+
+    /**
+     * @return Three times the triangles over the connected triples (pairs of edges sharing a node), also known as
+     * the transitivity of the graph
+     */
+    public double getGlobalClustering() {
+        long triples = 0;
+        for (int degree : this.degrees) triples += (long) degree * (degree - 1) / 2;
+        return triples == 0 ? 0.0 : 3.0 * this.triangleAmount / triples;
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    private double clustering(int node) {
+        long degree = this.degrees[node];
+        return degree < 2 ? 0.0 : 2.0 * this.triangles[node] / (degree * (degree - 1));
+    }
+
+    private int[] count(CsrGraph undirected, int parallelism) {
+        int n = undirected.getSize();
+
+        // Rank by degree, ties broken by index, with a counting sort; the forward lists hold ranks, so they come out
+        // sorted by rank
+        int maxDegree = 0;
+        for (int degree : this.degrees) maxDegree = Math.max(maxDegree, degree);
+        int[] firstRank = new int[maxDegree + 2];
+        for (int degree : this.degrees) firstRank[degree + 1]++;
+        for (int d = 0; d <= maxDegree; d++) firstRank[d + 1] += firstRank[d];
+        int[] nodeAt = new int[n];
+        int[] rank = new int[n];
+        for (int node = 0; node < n; node++) {
+            int r = firstRank[this.degrees[node]]++;
+            nodeAt[r] = node;
+            rank[node] = r;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int r = 0; r < n; r++) {
+            int node = nodeAt[r];
+            for (int e = undirected.edgeStart(node); e < undirected.edgeEnd(node); e++) {
+                if (rank[undirected.targetAt(e)] > r) offsets[r + 1]++;
+            }
+        }
+        for (int r = 0; r < n; r++) offsets[r + 1] += offsets[r];
+        int[] forward = new int[offsets[n]];
+        for (int r = 0; r < n; r++) {
+            int node = nodeAt[r];
+            int position = offsets[r];
+            for (int e = undirected.edgeStart(node); e < undirected.edgeEnd(node); e++) {
+                int other = rank[undirected.targetAt(e)];
+                if (other > r) forward[position++] = other;
+            }
+            Arrays.sort(forward, offsets[r], offsets[r + 1]);
+        }
+
+        int tasks = (n + NODES_PER_TASK - 1) / NODES_PER_TASK;
+        int[] byRank;
+        if (parallelism == 1 || tasks <= 1) {
+            byRank = new int[n];
+            countRange(offsets, forward, 0, n, byRank);
+        }
+        else byRank = countInParallel(offsets, forward, n, tasks, parallelism);
+
+        int[] perNode = new int[n];
+        for (int r = 0; r < n; r++) perNode[nodeAt[r]] = byRank[r];
+        return perNode;
+    }
+
+    private static int[] countInParallel(int[] offsets, int[] forward, int n, int tasks, int parallelism) {
+        ExecutorService pool = Parallel.daemonPool("triangle-worker", parallelism);
+        // One array of counts per thread, so the threads never write to the same place
+        List<int[]> partials = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> {
+            int[] partial = new int[n];
+            partials.add(partial);
+            return partial;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int task = 0; task < tasks; task++) {
+                int from = task * NODES_PER_TASK;
+                int to = Math.min(n, from + NODES_PER_TASK);
+                futures.add(pool.submit(() -> countRange(offsets, forward, from, to, counts.get())));
+            }
+            Parallel.await(futures, "counting the triangles");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        int[] total = new int[n];
+        for (int[] partial : partials) {
+            for (int r = 0; r < n; r++) total[r] += partial[r];
+        }
+        return total;
+    }
+
+    /**
+     * Finds every triangle whose lowest ranked node is in the range, adding one to each of its three nodes
+     */
+    private static void countRange(int[] offsets, int[] forward, int from, int to, int[] counts) {
+        for (int u = from; u < to; u++) {
+            int uStart = offsets[u];
+            int uEnd = offsets[u + 1];
+            for (int e = uStart; e < uEnd; e++) {
+                int v = forward[e];
+                // Only the nodes after v in u's list can be in v's list, since v's holds higher ranks than v only
+                int i = e + 1;
+                int j = offsets[v];
+                int vEnd = offsets[v + 1];
+                while (i < uEnd && j < vEnd) {
+                    if (forward[i] < forward[j]) i++;
+                    else if (forward[i] > forward[j]) j++;
+                    else {
+                        counts[u]++;
+                        counts[v]++;
+                        counts[forward[i]]++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Counts the second level friends (friends of friends, without the direct friends nor the user itself) of every node
+ * of a graph without building a single set. Each thread keeps one stamp array with an int per node: while a node is
+ * being counted its neighbours are stamped with one value and every friend of a friend already counted with another,
+ * both unique to that node, so the array never has to be cleared. That's O(n) memory per thread instead of a set per
+ * node. Only the sets of the nodes with the highest reach are built, at the end
+ */
+
+public class TwoHopReach {
+    private static final int NODES_PER_TASK = 1024;
+
+    private final CsrGraph snapshot;
+    private final int[] reach;
+    private final int highestReach;
+
+    public TwoHopReach(Graph graph) {
+        this(graph, 1);
+    }
+
+    /**
+     * @param graph A CapGraph, a frozen snapshot, or any other Graph
+     * @param parallelism Amount of threads counting at the same time
+     */
+    public TwoHopReach(Graph graph, int parallelism) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        Parallel.checkParallelism(parallelism);
+
+        this.snapshot = CsrGraph.of(graph);
+        this.reach = new int[this.snapshot.getSize()];
+        countReach(parallelism);
+
+        int highest = 0;
+        for (int count : this.reach) highest = Math.max(highest, count);
+        this.highestReach = highest;
+    }
+
+    /**
+     * @return The amount of second level friends of every node, indexed by the dense indices of getSnapshot()
+     */
+    public int[] getReach() {
+        return this.reach.clone();
+    }
+
+    /**
+     * @return The amount of second level friends of a node, or -1 if there is no such node
+     */
+    public int getReach(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? -1 : this.reach[index];
+    }
+
+    public int getHighestReach() {
+        return this.highestReach;
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return A Map where the key represents the ID(s) of the node(s) with a highest reach in two hops, and
+     * the value being a Set of IDs representing those two hop potentials (first hop friends/direct friends NOT included);
+     * empty if no node reaches anyone in two hops
+     */
+    public Map<Integer, Set<Integer>> getHighestTwoHop() {
+        Map<Integer, Set<Integer>> highest = new HashMap<>();
+        if (this.highestReach == 0) return highest;
+
+        for (int node = 0; node < this.reach.length; node++) {
+            if (this.reach[node] == this.highestReach) {
+                int id = this.snapshot.idAt(node);
+                highest.put(id, this.snapshot.get2ndLevelFriends(id));
+            }
+        }
+        return highest;
+    }
+
+    private void countReach(int parallelism) {
+        int n = this.snapshot.getSize();
+        int tasks = (n + NODES_PER_TASK - 1) / NODES_PER_TASK;
+        if (parallelism == 1 || tasks <= 1) {
+            countRange(0, n, new int[n]);
+            return;
+        }
+
+        ExecutorService pool = Parallel.daemonPool("two-hop-worker", parallelism);
+        ThreadLocal<int[]> stamps = ThreadLocal.withInitial(() -> new int[n]);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int task = 0; task < tasks; task++) {
+                int from = task * NODES_PER_TASK;
+                int to = Math.min(n, from + NODES_PER_TASK);
+                futures.add(pool.submit(() -> countRange(from, to, stamps.get())));
+            }
+            Parallel.await(futures, "counting the two hop reach");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param stamps Stamp array of the calling thread; node i uses 2i + 1 for its neighbours and 2i + 2 for the ones
+     * counted, and 0 is never used, so a fresh array needs no initialisation
+     */
+    private void countRange(int from, int to, int[] stamps) {
+        CsrGraph graph = this.snapshot;
+
+        for (int node = from; node < to; node++) {
+            int neighbourStamp = 2 * node + 1;
+            int countedStamp = 2 * node + 2;
+            int start = graph.edgeStart(node);
+            int end = graph.edgeEnd(node);
+
+            stamps[node] = neighbourStamp;
+            for (int e = start; e < end; e++) stamps[graph.targetAt(e)] = neighbourStamp;
+
+            int count = 0;
+            for (int e = start; e < end; e++) {
+                int neighbour = graph.targetAt(e);
+                for (int f = graph.edgeStart(neighbour); f < graph.edgeEnd(neighbour); f++) {
+                    int candidate = graph.targetAt(f);
+                    int stamp = stamps[candidate];
+                    if (stamp != neighbourStamp && stamp != countedStamp) {
+                        stamps[candidate] = countedStamp;
+                        count++;
+                    }
+                }
+            }
+            this.reach[node] = count;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package graph.metrics;
+
+import java.io.PrintStream;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Listener for what the long-running parts of the project are doing: every iteration of Girvan-Newman, every search
+ * for SCCs, every egonet and every file loaded. Every method does nothing by default, so an implementation only
+ * overrides what it cares about. Methods are called on the thread doing the work, right after it, so they should
+ * return quickly. Install one with Metrics.install; while none is installed, nothing is measured at all
+ */
+
+public interface GraphMetrics {
+
+    /**
+     * @param iteration Number of the iteration, starting from 1
+     * @param betweennessNanos Time spent scoring the edges
+     * @param edgesRemoved Edges deleted in this iteration: one, or two if the edge went both ways
+     * @param componentAmount Amount of communities (connected components) after the iteration
+     * @param largestComponent Amount of nodes of the largest of them
+     * @param allocatedBytes Bytes allocated during the iteration by the calling thread and the betweenness engine's
+     * threads in this JVM (worker processes are not included), or -1 if the JVM can't tell
+     */
+    default void communityIteration(int iteration, long betweennessNanos, int edgesRemoved, int componentAmount,
+                                    int largestComponent, long allocatedBytes) {}
+
+    /**
+     * @param nodes Size of the graph searched
+     * @param componentAmount Amount of SCCs found
+     * @param parallelism Amount of threads used
+     */
+    default void sccsFound(int nodes, int componentAmount, int parallelism, long nanos) {}
+
+    /**
+     * @param center ID of the center of the egonet
+     * @param nodes Amount of nodes in the egonet, 0 if the center wasn't in the graph
+     */
+    default void egonetExtracted(int center, int nodes, long nanos) {}
+
+    /**
+     * @param filename File the graph was read from
+     * @param lines Amount of edges read
+     */
+    default void graphLoaded(String filename, long lines, long nanos) {}
+
+    /**
+     * @return A listener printing the iterations of Girvan-Newman and the loads, as detectCommunities used to do
+     */
+    static GraphMetrics printing(PrintStream out) {
+        if (out == null) throw new NullPointerException("The stream passed to this function points to a null value");
+        return new GraphMetrics() {
+            @Override
+            public void communityIteration(int iteration, long betweennessNanos, int edgesRemoved, int componentAmount,
+                                           int largestComponent, long allocatedBytes) {
+                out.println("Iteration number: " + iteration + ", " + String.format("%.3f", betweennessNanos / 1e9)
+                        + " seconds to get bet. score, " + edgesRemoved + " edge(s) removed, " + componentAmount
+                        + " comms. found, the largest with " + largestComponent + " nodes");
+            }
+
+            @Override
+            public void graphLoaded(String filename, long lines, long nanos) {
+                out.println(filename + ": " + lines + " lines in " + String.format("%.3f", nanos / 1e9) + " seconds");
+            }
+        };
+    }
+}
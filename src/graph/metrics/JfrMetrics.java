@@ -0,0 +1,123 @@
+package graph.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Turns every report into a Java Flight Recorder event, so a recording (java -XX:StartFlightRecording, or jcmd on a
+ * running JVM) shows the iterations of Girvan-Newman, the SCC searches, the egonets and the loads next to the GC and
+ * the threads. The events are created only while a recording has them enabled; the egonet ones are disabled by
+ * default, as there can be one per node of the graph
+ */
+
+public class JfrMetrics implements GraphMetrics {
+    private static final String CATEGORY = "Social Network Graphs";
+
+    @Override
+    public void communityIteration(int iteration, long betweennessNanos, int edgesRemoved, int componentAmount,
+                                   int largestComponent, long allocatedBytes) {
+        CommunityIterationEvent event = new CommunityIterationEvent();
+        if (!event.isEnabled()) return;
+        event.iteration = iteration;
+        event.betweennessTime = betweennessNanos;
+        event.edgesRemoved = edgesRemoved;
+        event.componentAmount = componentAmount;
+        event.largestComponent = largestComponent;
+        event.allocatedBytes = allocatedBytes;
+        event.commit();
+    }
+
+    @Override
+    public void sccsFound(int nodes, int componentAmount, int parallelism, long nanos) {
+        SccEvent event = new SccEvent();
+        if (!event.isEnabled()) return;
+        event.nodes = nodes;
+        event.componentAmount = componentAmount;
+        event.parallelism = parallelism;
+        event.time = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void egonetExtracted(int center, int nodes, long nanos) {
+        EgonetEvent event = new EgonetEvent();
+        if (!event.isEnabled()) return;
+        event.center = center;
+        event.nodes = nodes;
+        event.time = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void graphLoaded(String filename, long lines, long nanos) {
+        GraphLoadEvent event = new GraphLoadEvent();
+        if (!event.isEnabled()) return;
+        event.filename = filename;
+        event.lines = lines;
+        event.time = nanos;
+        event.commit();
+    }
+
+    @Name("graph.CommunityIteration")
+    @Label("Community Detection Iteration")
+    @Category(CATEGORY)
+    public static class CommunityIterationEvent extends Event {
+        @Label("Iteration")
+        int iteration;
+        @Label("Betweenness Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long betweennessTime;
+        @Label("Edges Removed")
+        int edgesRemoved;
+        @Label("Communities")
+        int componentAmount;
+        @Label("Largest Community")
+        int largestComponent;
+        @Label("Allocated")
+        @Description("Bytes allocated by the calling thread and the betweenness threads of this JVM")
+        @DataAmount(DataAmount.BYTES)
+        long allocatedBytes;
+    }
+
+    @Name("graph.SCC")
+    @Label("Strongly Connected Components")
+    @Category(CATEGORY)
+    public static class SccEvent extends Event {
+        @Label("Nodes")
+        int nodes;
+        @Label("Components")
+        int componentAmount;
+        @Label("Parallelism")
+        int parallelism;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("graph.Egonet")
+    @Label("Egonet")
+    @Category(CATEGORY)
+    @Enabled(false)
+    public static class EgonetEvent extends Event {
+        @Label("Center")
+        int center;
+        @Label("Nodes")
+        int nodes;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("graph.Load")
+    @Label("Graph Load")
+    @Category(CATEGORY)
+    public static class GraphLoadEvent extends Event {
+        @Label("File")
+        String filename;
+        @Label("Lines")
+        long lines;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
@@ -0,0 +1,56 @@
+package graph.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Holds the GraphMetrics listener instrumented code reports to, if any. Instrumented methods read it once and only
+ * take the time when it isn't null:
+ *
+ *     GraphMetrics metrics = Metrics.current();
+ *     long start = metrics == null ? 0L : System.nanoTime();
+ *     ...
+ *     if (metrics != null) metrics.sccsFound(n, amount, parallelism, System.nanoTime() - start);
+ *
+ * so with nothing installed the whole cost is reading one field and a branch the JIT predicts perfectly
+ */
+
+public final class Metrics {
+    private static volatile GraphMetrics current;
+
+    private Metrics() {}
+
+    /**
+     * @return The installed listener, or null if instrumentation is disabled
+     */
+    public static GraphMetrics current() {
+        return current;
+    }
+
+    /**
+     * Replaces the installed listener, if any
+     */
+    public static void install(GraphMetrics metrics) {
+        if (metrics == null) throw new NullPointerException("The listener passed to this function points to a null value");
+        current = metrics;
+    }
+
+    /**
+     * Disables instrumentation
+     */
+    public static void uninstall() {
+        current = null;
+    }
+
+    /**
+     * @return The bytes allocated so far by the calling thread, or -1 if the JVM doesn't keep track of them
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1L;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) return -1L;
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,40 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Hop distances from one source along the direction of the edges: the frontier of each superstep tells its
+ * out-neighbours their distance, and a vertex only takes the first one it hears. Vertices the source can't reach keep
+ * a null value
+ */
+
+public class BreadthFirstSearchProgram implements VertexProgram<Integer, Integer> {
+    private final int sourceId;
+
+    /**
+     * @param sourceId ID of the node the search starts from
+     */
+    public BreadthFirstSearchProgram(int sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    @Override
+    public void compute(Vertex<Integer, Integer> vertex, Messages<Integer> messages) {
+        if (vertex.getSuperstep() == 0) {
+            if (vertex.getId() == this.sourceId) {
+                vertex.setValue(0);
+                vertex.sendToOutNeighbours(1);
+            }
+        } else if (vertex.getValue() == null) {
+            int distance = messages.get(0);
+            for (int i = 1; i < messages.size(); i++) distance = Math.min(distance, messages.get(i));
+            vertex.setValue(distance);
+            vertex.sendToOutNeighbours(distance + 1);
+        }
+        vertex.voteToHalt();
+    }
+
+    @Override
+    public Combiner<Integer> getCombiner() {
+        return Combiner.minInt();
+    }
+}
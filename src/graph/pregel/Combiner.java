@@ -0,0 +1,25 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Merges two messages sent to the same vertex into one, so a vertex gets a single message per superstep and far fewer
+ * of them cross the transport. It must be commutative and associative, since messages are merged in no fixed order,
+ * both by the sender before a batch is sent and by the receiver as batches arrive
+ */
+
+public interface Combiner<M> {
+
+    M combine(M first, M second);
+
+    static Combiner<Integer> minInt() {
+        return (first, second) -> first <= second ? first : second;
+    }
+
+    static Combiner<Integer> maxInt() {
+        return (first, second) -> first >= second ? first : second;
+    }
+
+    static Combiner<Double> sumDouble() {
+        return (first, second) -> first + second;
+    }
+}
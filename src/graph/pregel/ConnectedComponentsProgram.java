@@ -0,0 +1,34 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Weakly connected components by HashMin: every vertex starts with its own dense index as label and keeps passing
+ * the smallest label it has seen to its neighbours in both directions. It ends with every vertex labelled with the
+ * smallest dense index of its component, after as many supersteps as the diameter of the largest one
+ */
+
+public class ConnectedComponentsProgram implements VertexProgram<Integer, Integer> {
+
+    @Override
+    public void compute(Vertex<Integer, Integer> vertex, Messages<Integer> messages) {
+        if (vertex.getSuperstep() == 0) {
+            vertex.setValue(vertex.getIndex());
+            vertex.sendToOutNeighbours(vertex.getIndex());
+            vertex.sendToInNeighbours(vertex.getIndex());
+        } else {
+            int smallest = vertex.getValue();
+            for (int i = 0; i < messages.size(); i++) smallest = Math.min(smallest, messages.get(i));
+            if (smallest < vertex.getValue()) {
+                vertex.setValue(smallest);
+                vertex.sendToOutNeighbours(smallest);
+                vertex.sendToInNeighbours(smallest);
+            }
+        }
+        vertex.voteToHalt();
+    }
+
+    @Override
+    public Combiner<Integer> getCombiner() {
+        return Combiner.minInt();
+    }
+}
@@ -0,0 +1,94 @@
+package graph.pregel;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The messages delivered to the vertices of one shard for the next superstep, by local index. With a combiner each
+ * vertex keeps a single message, merged as they arrive; without one, messages are appended as they arrive and grouped
+ * by vertex with a counting sort once delivery is over
+ */
+
+final class Inbox<M> {
+    private final int size;
+    private final Combiner<M> combiner;
+    private final Messages<M> view = new Messages<>();
+
+    // With a combiner: the merged message of each vertex, or null
+    private final Object[] combined;
+
+    // Without one: the messages in arrival order, then grouped, with the range of each vertex given by offsets
+    private int[] locals;
+    private Object[] arrived;
+    private Object[] grouped;
+    private final int[] offsets;
+    private int count;
+
+    Inbox(int size, Combiner<M> combiner) {
+        this.size = size;
+        this.combiner = combiner;
+        if (combiner != null) {
+            this.combined = new Object[size];
+            this.offsets = null;
+        } else {
+            this.combined = null;
+            this.locals = new int[16];
+            this.arrived = new Object[16];
+            this.grouped = new Object[16];
+            this.offsets = new int[size + 1];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void add(int local, M message) {
+        if (this.combined != null) {
+            Object current = this.combined[local];
+            this.combined[local] = current == null ? message : this.combiner.combine((M) current, message);
+            return;
+        }
+
+        if (this.count == this.locals.length) {
+            this.locals = Arrays.copyOf(this.locals, this.count * 2);
+            this.arrived = Arrays.copyOf(this.arrived, this.count * 2);
+            this.grouped = new Object[this.count * 2];
+        }
+        this.locals[this.count] = local;
+        this.arrived[this.count++] = message;
+    }
+
+    /**
+     * Groups the messages by vertex, once every batch of the superstep was added
+     */
+    void seal() {
+        if (this.combined != null) return;
+
+        Arrays.fill(this.offsets, 0);
+        for (int i = 0; i < this.count; i++) this.offsets[this.locals[i] + 1]++;
+        for (int local = 0; local < this.size; local++) this.offsets[local + 1] += this.offsets[local];
+
+        // Each offset is used as the cursor of its vertex, which leaves it at the start of the next one
+        for (int i = 0; i < this.count; i++) this.grouped[this.offsets[this.locals[i]]++] = this.arrived[i];
+        for (int local = this.size; local > 0; local--) this.offsets[local] = this.offsets[local - 1];
+        this.offsets[0] = 0;
+    }
+
+    /**
+     * @return The messages of the vertex, in a view that is reused by the next call
+     */
+    Messages<M> of(int local) {
+        if (this.combined != null) this.view.set(this.combined, local, this.combined[local] == null ? 0 : 1);
+        else this.view.set(this.grouped, this.offsets[local], this.offsets[local + 1] - this.offsets[local]);
+        return this.view;
+    }
+
+    void clear() {
+        if (this.combined != null) {
+            Arrays.fill(this.combined, null);
+            return;
+        }
+        Arrays.fill(this.arrived, 0, this.count, null);
+        Arrays.fill(this.grouped, 0, this.count, null);
+        Arrays.fill(this.offsets, 0);
+        this.count = 0;
+    }
+}
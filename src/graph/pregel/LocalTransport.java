@@ -0,0 +1,41 @@
+package graph.pregel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * In-memory transport: one list of batches per pair of shards, each written by a single sender and read by a single
+ * receiver, so no lock is needed; the barrier between sending and receiving (the futures of the engine) makes the
+ * batches visible to the receiver
+ */
+
+public class LocalTransport<M> implements Transport<M> {
+    // Batches sent to each shard, by the shard that sent them
+    private final List<List<List<MessageBatch<M>>>> inboxes;
+
+    public LocalTransport(int shards) {
+        if (shards < 1) throw new IllegalArgumentException("There must be at least one shard, got " + shards);
+        this.inboxes = new ArrayList<>(shards);
+        for (int to = 0; to < shards; to++) {
+            List<List<MessageBatch<M>>> senders = new ArrayList<>(shards);
+            for (int from = 0; from < shards; from++) senders.add(new ArrayList<>());
+            this.inboxes.add(senders);
+        }
+    }
+
+    @Override
+    public void send(int fromShard, int toShard, MessageBatch<M> batch) {
+        this.inboxes.get(toShard).get(fromShard).add(batch);
+    }
+
+    @Override
+    public List<MessageBatch<M>> receive(int shard) {
+        List<MessageBatch<M>> received = new ArrayList<>();
+        for (List<MessageBatch<M>> sent : this.inboxes.get(shard)) {
+            received.addAll(sent);
+            sent.clear();
+        }
+        return received;
+    }
+}
@@ -0,0 +1,59 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * What the master sees at a barrier: the totals of the superstep that just ended, and the phase, a number the
+ * program is free to give any meaning to (which stage of a multi-stage algorithm is running, say) and that every
+ * vertex reads in the next superstep
+ */
+
+public final class Master {
+    private int superstep;
+    private long messagesSent;
+    private int activeVertices;
+    private double aggregate;
+    private int phase;
+
+    Master() {
+    }
+
+    void finish(int superstep, long messagesSent, int activeVertices, double aggregate) {
+        this.superstep = superstep;
+        this.messagesSent = messagesSent;
+        this.activeVertices = activeVertices;
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * @return The superstep that just ended, starting from 0
+     */
+    public int getSuperstep() {
+        return this.superstep;
+    }
+
+    public long getMessagesSent() {
+        return this.messagesSent;
+    }
+
+    /**
+     * @return The amount of vertices that computed and didn't vote to halt
+     */
+    public int getActiveVertices() {
+        return this.activeVertices;
+    }
+
+    /**
+     * @return The sum of every value the vertices aggregated during the superstep
+     */
+    public double getAggregate() {
+        return this.aggregate;
+    }
+
+    public int getPhase() {
+        return this.phase;
+    }
+
+    public void setPhase(int phase) {
+        this.phase = phase;
+    }
+}
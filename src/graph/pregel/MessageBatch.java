@@ -0,0 +1,44 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Messages from one shard to another, sent through the transport together: the dense index of the target of each
+ * message and the message itself, in two parallel arrays
+ */
+
+public final class MessageBatch<M> {
+    private final int[] targets;
+    private final Object[] messages;
+    private int size;
+
+    public MessageBatch(int capacity) {
+        this.targets = new int[capacity];
+        this.messages = new Object[capacity];
+    }
+
+    public void add(int target, M message) {
+        this.targets[this.size] = target;
+        this.messages[this.size++] = message;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isFull() {
+        return this.size == this.targets.length;
+    }
+
+    public int targetAt(int position) {
+        return this.targets[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    public M messageAt(int position) {
+        return (M) this.messages[position];
+    }
+
+    void setMessage(int position, M message) {
+        this.messages[position] = message;
+    }
+}
@@ -0,0 +1,36 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The messages a vertex received, read by position as a NeighbourView is. The same object is reused for every
+ * vertex of a shard, so it is only valid during the call to compute it was passed to
+ */
+
+public final class Messages<M> {
+    private Object[] messages;
+    private int from;
+    private int size;
+
+    Messages() {
+    }
+
+    void set(Object[] messages, int from, int size) {
+        this.messages = messages;
+        this.from = from;
+        this.size = size;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public M get(int position) {
+        if (position >= this.size) throw new IndexOutOfBoundsException("Position " + position + " of " + this.size + " messages");
+        return (M) this.messages[this.from + position];
+    }
+}
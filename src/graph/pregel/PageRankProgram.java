@@ -0,0 +1,54 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * PageRank by power iteration, for a fixed amount of iterations: every vertex sends its rank divided by its
+ * out-degree to its out-neighbours, and the rank of the vertices without out-edges is aggregated and spread evenly
+ * over every vertex, so the ranks keep adding up to one
+ */
+
+public class PageRankProgram implements VertexProgram<Double, Double> {
+    private static final int DEFAULT_ITERATIONS = 30;
+    private static final double DEFAULT_DAMPING = 0.85;
+
+    private final int iterations;
+    private final double damping;
+
+    public PageRankProgram() {
+        this(DEFAULT_ITERATIONS, DEFAULT_DAMPING);
+    }
+
+    /**
+     * @param damping Probability of following an edge rather than jumping to any vertex
+     */
+    public PageRankProgram(int iterations, double damping) {
+        if (iterations < 1) throw new IllegalArgumentException("There must be at least one iteration, got " + iterations);
+        if (damping < 0 || damping > 1) throw new IllegalArgumentException("The damping must be between 0 and 1, got " + damping);
+        this.iterations = iterations;
+        this.damping = damping;
+    }
+
+    @Override
+    public void compute(Vertex<Double, Double> vertex, Messages<Double> messages) {
+        int n = vertex.getVertexAmount();
+        if (vertex.getSuperstep() == 0) {
+            vertex.setValue(1.0 / n);
+        } else {
+            double received = messages.isEmpty() ? 0 : messages.get(0);
+            vertex.setValue((1 - this.damping) / n + this.damping * (received + vertex.getAggregate() / n));
+        }
+
+        if (vertex.getSuperstep() == this.iterations) {
+            vertex.voteToHalt();
+        } else if (vertex.getOutDegree() == 0) {
+            vertex.aggregate(vertex.getValue());
+        } else {
+            vertex.sendToOutNeighbours(vertex.getValue() / vertex.getOutDegree());
+        }
+    }
+
+    @Override
+    public Combiner<Double> getCombiner() {
+        return Combiner.sumDouble();
+    }
+}
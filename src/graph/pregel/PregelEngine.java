@@ -0,0 +1,132 @@
+package graph.pregel;
+
+import graph.CsrGraph;
+import graph.Graph;
+import graph.Parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Runs vertex programs in bulk synchronous parallel supersteps (Valiant, 1990) over a CsrGraph snapshot split into
+ * shards, each with a worker of its own. A superstep has two halves, each ending at a barrier: every worker computes
+ * on the active vertices of its shard, batching the messages by destination shard and sending them through the
+ * transport; then every worker receives the batches sent to its shard and fills the inbox of its vertices for the
+ * next superstep. Messages are only ever seen one superstep after they were sent, so the result doesn't depend on
+ * the amount of shards or on how the workers interleave. Between supersteps the program's masterCompute runs alone
+ */
+
+public class PregelEngine {
+    private final CsrGraph snapshot;
+    private final CsrGraph transposed;
+    private final int shardAmount;
+
+    public PregelEngine(Graph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param graph A CapGraph, a frozen snapshot, or any other Graph; it is frozen once, so changes made afterwards
+     * aren't seen by the runs of this engine
+     * @param shards Amount of shards, and of worker threads; it is capped to the amount of nodes
+     */
+    public PregelEngine(Graph graph, int shards) {
+        if (graph == null) throw new NullPointerException("The graph passed to this constructor points to a null value");
+        if (shards < 1) throw new IllegalArgumentException("There must be at least one shard, got " + shards);
+
+        this.snapshot = CsrGraph.of(graph);
+        this.transposed = (CsrGraph) this.snapshot.transposeGraph();
+        this.shardAmount = Math.max(1, Math.min(shards, this.snapshot.getSize()));
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    public int getShardAmount() {
+        return this.shardAmount;
+    }
+
+    public <V, M> PregelResult<V> run(VertexProgram<V, M> program) {
+        return run(program, new LocalTransport<>(this.shardAmount), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param transport How the shards exchange their batches; it is closed once the run is over
+     * @param maxSupersteps The run stops after this many supersteps even if some vertex is still active
+     */
+    public <V, M> PregelResult<V> run(VertexProgram<V, M> program, Transport<M> transport, int maxSupersteps) {
+        if (program == null) throw new NullPointerException("The program passed to this method points to a null value");
+        if (transport == null) throw new NullPointerException("The transport passed to this method points to a null value");
+        if (maxSupersteps < 1) throw new IllegalArgumentException("There must be at least one superstep, got " + maxSupersteps);
+
+        List<Shard<V, M>> shards = new ArrayList<>(this.shardAmount);
+        for (int i = 0; i < this.shardAmount; i++) {
+            shards.add(new Shard<>(i, this.shardAmount, this.snapshot, this.transposed, transport, program.getCombiner()));
+        }
+
+        ExecutorService pool = this.shardAmount > 1 ? Parallel.daemonPool("pregel-worker", this.shardAmount) : null;
+        Master master = new Master();
+        int superstep = 0;
+        long totalMessages = 0;
+        double aggregate = 0;
+
+        try {
+            while (superstep < maxSupersteps) {
+                int step = superstep;
+                int phase = master.getPhase();
+                double previousAggregate = aggregate;
+
+                forEachShard(pool, shards, shard -> shard.compute(program, step, phase, previousAggregate));
+                forEachShard(pool, shards, Shard::deliver);
+
+                long messages = 0;
+                int active = 0;
+                aggregate = 0;
+                for (Shard<V, M> shard : shards) {
+                    messages += shard.messagesSent;
+                    active += shard.activeVertices;
+                    aggregate += shard.aggregate;
+                }
+                totalMessages += messages;
+                superstep++;
+
+                master.finish(step, messages, active, aggregate);
+                if (!program.masterCompute(master)) break;
+                if (master.getPhase() != phase) {
+                    for (Shard<V, M> shard : shards) shard.wakeAll();
+                } else if (messages == 0 && active == 0) {
+                    break;
+                }
+            }
+        }
+        finally {
+            if (pool != null) pool.shutdownNow();
+            transport.close();
+        }
+
+        Object[] values = new Object[this.snapshot.getSize()];
+        for (Shard<V, M> shard : shards) {
+            for (int local = 0; local < shard.size; local++) values[shard.globalIndex(local)] = shard.values[local];
+        }
+        return new PregelResult<>(this.snapshot, values, superstep, totalMessages);
+    }
+
+    /**
+     * Runs the work of every shard on its worker and waits for all of them, which is the barrier between the halves
+     * of a superstep; with a single shard it runs on the calling thread
+     */
+    private static <V, M> void forEachShard(ExecutorService pool, List<Shard<V, M>> shards, Consumer<Shard<V, M>> work) {
+        if (pool == null) {
+            for (Shard<V, M> shard : shards) work.accept(shard);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(shards.size());
+        for (Shard<V, M> shard : shards) futures.add(pool.submit(() -> work.accept(shard)));
+        Parallel.await(futures, "running a superstep");
+    }
+}
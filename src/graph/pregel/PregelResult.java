@@ -0,0 +1,47 @@
+package graph.pregel;
+
+import graph.CsrGraph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The values a program left on every vertex, with the amount of supersteps and messages it took
+ */
+
+public class PregelResult<V> {
+    private final CsrGraph snapshot;
+    private final Object[] values;
+    private final int supersteps;
+    private final long messagesSent;
+
+    PregelResult(CsrGraph snapshot, Object[] values, int supersteps, long messagesSent) {
+        this.snapshot = snapshot;
+        this.values = values;
+        this.supersteps = supersteps;
+        this.messagesSent = messagesSent;
+    }
+
+    /**
+     * @return The value of the node with this ID, or null if there is no such node (or the program never set it)
+     */
+    public V getValue(int id) {
+        int index = this.snapshot.indexOf(id);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) this.values[index];
+    }
+
+    public CsrGraph getSnapshot() {
+        return this.snapshot;
+    }
+
+    public int getSupersteps() {
+        return this.supersteps;
+    }
+
+    public long getMessagesSent() {
+        return this.messagesSent;
+    }
+}
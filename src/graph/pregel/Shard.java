@@ -0,0 +1,137 @@
+package graph.pregel;
+
+import graph.CsrGraph;
+import graph.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The vertices whose dense index leaves a remainder of index when divided by the amount of shards, so the local index
+ * of a vertex is its dense index divided by that amount and no table is needed to go from one to the other. A shard
+ * owns the values, halt flags and inbox of its vertices, and the outgoing batch to every shard; only its worker
+ * touches them, the other shards only see the batches it sends through the transport
+ */
+
+final class Shard<V, M> {
+    static final int BATCH_SIZE = 4096;
+
+    final int index;
+    final int shardAmount;
+    final CsrGraph graph;
+    final CsrGraph transposed;
+    final int size;
+    final Object[] values;
+    final boolean[] halted;
+
+    private final Transport<M> transport;
+    private final Combiner<M> combiner;
+    private final Inbox<M> inbox;
+    private final MessageBatch<M>[] outgoing;
+    // With a combiner, where the message to each target already sits in the outgoing batch of its shard
+    private final LongIntHashMap[] pending;
+    private final Vertex<V, M> vertex;
+
+    // State of the current superstep, read by Vertex
+    int superstep;
+    int phase;
+    double previousAggregate;
+
+    // Totals of the current superstep, read by the engine at the barrier
+    long messagesSent;
+    int activeVertices;
+    double aggregate;
+
+    @SuppressWarnings("unchecked")
+    Shard(int index, int shardAmount, CsrGraph graph, CsrGraph transposed, Transport<M> transport, Combiner<M> combiner) {
+        this.index = index;
+        this.shardAmount = shardAmount;
+        this.graph = graph;
+        this.transposed = transposed;
+        this.size = Math.max(0, (graph.getSize() - index + shardAmount - 1) / shardAmount);
+        this.values = new Object[this.size];
+        this.halted = new boolean[this.size];
+        this.transport = transport;
+        this.combiner = combiner;
+        this.inbox = new Inbox<>(this.size, combiner);
+        this.outgoing = (MessageBatch<M>[]) new MessageBatch<?>[shardAmount];
+        for (int to = 0; to < shardAmount; to++) this.outgoing[to] = new MessageBatch<>(BATCH_SIZE);
+        if (combiner != null) {
+            this.pending = new LongIntHashMap[shardAmount];
+            for (int to = 0; to < shardAmount; to++) this.pending[to] = new LongIntHashMap(BATCH_SIZE, -1);
+        } else {
+            this.pending = null;
+        }
+        this.vertex = new Vertex<>(this);
+    }
+
+    int globalIndex(int local) {
+        return local * this.shardAmount + this.index;
+    }
+
+    /**
+     * Runs the program on every vertex that is active or got messages, then sends whatever is left in the batches
+     */
+    void compute(VertexProgram<V, M> program, int superstep, int phase, double previousAggregate) {
+        this.superstep = superstep;
+        this.phase = phase;
+        this.previousAggregate = previousAggregate;
+        this.messagesSent = 0;
+        this.activeVertices = 0;
+        this.aggregate = 0;
+
+        for (int local = 0; local < this.size; local++) {
+            Messages<M> messages = this.inbox.of(local);
+            if (this.halted[local] && messages.isEmpty()) continue;
+
+            this.halted[local] = false;
+            this.vertex.bind(local, globalIndex(local));
+            program.compute(this.vertex, messages);
+            if (!this.halted[local]) this.activeVertices++;
+        }
+
+        for (int to = 0; to < this.shardAmount; to++) flush(to);
+    }
+
+    void send(int target, M message) {
+        if (message == null) throw new NullPointerException("A vertex tried to send a null message");
+        if (target < 0 || target >= this.graph.getSize()) throw new IllegalArgumentException("There is no vertex with dense index " + target);
+
+        this.messagesSent++;
+        int to = target % this.shardAmount;
+        MessageBatch<M> batch = this.outgoing[to];
+        if (this.pending != null) {
+            int position = this.pending[to].get(target);
+            if (position >= 0) {
+                batch.setMessage(position, this.combiner.combine(batch.messageAt(position), message));
+                return;
+            }
+            this.pending[to].put(target, batch.size());
+        }
+
+        batch.add(target, message);
+        if (batch.isFull()) flush(to);
+    }
+
+    private void flush(int to) {
+        if (this.outgoing[to].size() == 0) return;
+        this.transport.send(this.index, to, this.outgoing[to]);
+        this.outgoing[to] = new MessageBatch<>(BATCH_SIZE);
+        if (this.pending != null) this.pending[to].clear();
+    }
+
+    /**
+     * Replaces the messages of the superstep that just ended with the ones sent to this shard during it
+     */
+    void deliver() {
+        this.inbox.clear();
+        for (MessageBatch<M> batch : this.transport.receive(this.index)) {
+            for (int i = 0; i < batch.size(); i++) this.inbox.add(batch.targetAt(i) / this.shardAmount, batch.messageAt(i));
+        }
+        this.inbox.seal();
+    }
+
+    void wakeAll() {
+        Arrays.fill(this.halted, false);
+    }
+}
@@ -0,0 +1,107 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Strongly connected components by forward-backward colouring (Orzan, 2004), in rounds of four phases over the
+ * vertices that don't have a component yet:
+ * - every vertex takes its own dense index as colour and sends it along its out-edges;
+ * - the smallest colour is propagated forward until it stops changing, so each vertex ends up with the smallest
+ * index among the vertices that reach it;
+ * - the vertices that kept their own colour are roots, and each one starts its component;
+ * - the component is propagated backward along in-edges, but only to vertices of the root's colour, which are both
+ * reached by and reach the root.
+ * Each round completes the component of every root, and the run ends when a round finds no vertex left.
+ * The forward messages are combined with the minimum; the backward ones are sent as -(colour + 1), so the same
+ * combiner keeps the largest colour, and a vertex's own colour is the largest any of its out-neighbours can have
+ */
+
+public class StronglyConnectedComponentsProgram implements VertexProgram<StronglyConnectedComponentsProgram.State, Integer> {
+    private static final int FORWARD_START = 0;
+    private static final int FORWARD = 1;
+    private static final int BACKWARD_START = 2;
+    private static final int BACKWARD = 3;
+
+    /**
+     * Colour and component of a vertex; the component is the dense index of its root, or -1 while it has none
+     */
+    public static final class State {
+        private int colour = -1;
+        private int component = -1;
+
+        public int getComponent() {
+            return this.component;
+        }
+    }
+
+    @Override
+    public void compute(Vertex<State, Integer> vertex, Messages<Integer> messages) {
+        State state = vertex.getValue();
+        if (state == null) {
+            state = new State();
+            vertex.setValue(state);
+        }
+        vertex.voteToHalt();
+        if (state.component >= 0) return;
+
+        switch (vertex.getPhase()) {
+            case FORWARD_START:
+                state.colour = vertex.getIndex();
+                vertex.aggregate(1);
+                vertex.sendToOutNeighbours(state.colour);
+                break;
+            case FORWARD:
+                if (!messages.isEmpty() && messages.get(0) < state.colour) {
+                    state.colour = messages.get(0);
+                    vertex.sendToOutNeighbours(state.colour);
+                }
+                break;
+            case BACKWARD_START:
+                if (state.colour == vertex.getIndex()) {
+                    state.component = state.colour;
+                    vertex.sendToInNeighbours(-(state.colour + 1));
+                }
+                break;
+            case BACKWARD:
+                if (!messages.isEmpty() && -messages.get(0) - 1 == state.colour) {
+                    state.component = state.colour;
+                    vertex.sendToInNeighbours(-(state.colour + 1));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown phase " + vertex.getPhase());
+        }
+    }
+
+    @Override
+    public Combiner<Integer> getCombiner() {
+        return Combiner.minInt();
+    }
+
+    @Override
+    public boolean masterCompute(Master master) {
+        switch (master.getPhase()) {
+            case FORWARD_START:
+                if (master.getAggregate() == 0) return false;
+                master.setPhase(FORWARD);
+                break;
+            case FORWARD:
+                if (master.getMessagesSent() == 0) master.setPhase(BACKWARD_START);
+                break;
+            case BACKWARD_START:
+                master.setPhase(BACKWARD);
+                break;
+            default:
+                if (master.getMessagesSent() == 0) master.setPhase(FORWARD_START);
+        }
+        return true;
+    }
+
+    /**
+     * @return The component of every vertex of the result, indexed by dense index
+     */
+    public static int[] components(PregelResult<State> result) {
+        int[] components = new int[result.getSnapshot().getSize()];
+        for (int index = 0; index < components.length; index++) components[index] = result.valueAt(index).component;
+        return components;
+    }
+}
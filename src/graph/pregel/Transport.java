@@ -0,0 +1,32 @@
+package graph.pregel;
+
+import java.util.List;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * How the workers of the shards exchange their messages. During a superstep the worker of every shard sends batches
+ * to the other shards (itself included); after the barrier the worker of every shard receives everything that was
+ * sent to it. The engine never calls receive for a shard while a superstep is running, so an implementation only
+ * has to keep the batches of one superstep apart from the next. LocalTransport keeps them in memory; one that
+ * serializes the batches could put every worker in a process of its own without changing the programs
+ */
+
+public interface Transport<M> {
+
+    /**
+     * Called by the worker of fromShard, any amount of times per superstep
+     */
+    void send(int fromShard, int toShard, MessageBatch<M> batch);
+
+    /**
+     * Called by the worker of the shard after the barrier
+     * @return Every batch sent to the shard during the superstep that just ended
+     */
+    List<MessageBatch<M>> receive(int shard);
+
+    /**
+     * Called once the run is over
+     */
+    default void close() {
+    }
+}
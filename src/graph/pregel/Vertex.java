@@ -0,0 +1,117 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * The vertex a program is computing on, with its value, its neighbours in both directions and the ways to reach the
+ * rest of the graph. Vertices are addressed by their dense index in the snapshot the engine runs on; getId gives the
+ * ID of the node in the original graph. The same object is reused for every vertex of a shard
+ */
+
+public final class Vertex<V, M> {
+    private final Shard<V, M> shard;
+    private int local;
+    private int index;
+
+    Vertex(Shard<V, M> shard) {
+        this.shard = shard;
+    }
+
+    void bind(int local, int index) {
+        this.local = local;
+        this.index = index;
+    }
+
+    public int getId() {
+        return this.shard.graph.idAt(this.index);
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public int getVertexAmount() {
+        return this.shard.graph.getSize();
+    }
+
+    public int getSuperstep() {
+        return this.shard.superstep;
+    }
+
+    public int getPhase() {
+        return this.shard.phase;
+    }
+
+    /**
+     * @return The sum of every value the vertices aggregated during the previous superstep
+     */
+    public double getAggregate() {
+        return this.shard.previousAggregate;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+        return (V) this.shard.values[this.local];
+    }
+
+    public void setValue(V value) {
+        this.shard.values[this.local] = value;
+    }
+
+    public int getOutDegree() {
+        return this.shard.graph.degreeAt(this.index);
+    }
+
+    /**
+     * @return The dense index of the target of the position-th edge leaving this vertex
+     */
+    public int getOutNeighbour(int position) {
+        if (position < 0 || position >= getOutDegree()) throw new IndexOutOfBoundsException("Position " + position + " of " + getOutDegree() + " out-neighbours");
+        return this.shard.graph.targetAt(this.shard.graph.edgeStart(this.index) + position);
+    }
+
+    public int getInDegree() {
+        return this.shard.transposed.degreeAt(this.index);
+    }
+
+    /**
+     * @return The dense index of the source of the position-th edge reaching this vertex
+     */
+    public int getInNeighbour(int position) {
+        if (position < 0 || position >= getInDegree()) throw new IndexOutOfBoundsException("Position " + position + " of " + getInDegree() + " in-neighbours");
+        return this.shard.transposed.targetAt(this.shard.transposed.edgeStart(this.index) + position);
+    }
+
+    /**
+     * @param index Dense index of the vertex the message is for; it gets it in the next superstep
+     */
+    public void sendTo(int index, M message) {
+        this.shard.send(index, message);
+    }
+
+    public void sendToOutNeighbours(M message) {
+        for (int e = this.shard.graph.edgeStart(this.index); e < this.shard.graph.edgeEnd(this.index); e++) {
+            this.shard.send(this.shard.graph.targetAt(e), message);
+        }
+    }
+
+    public void sendToInNeighbours(M message) {
+        for (int e = this.shard.transposed.edgeStart(this.index); e < this.shard.transposed.edgeEnd(this.index); e++) {
+            this.shard.send(this.shard.transposed.targetAt(e), message);
+        }
+    }
+
+    /**
+     * The vertex isn't computed on again until a message reaches it (or the master changes the phase)
+     */
+    public void voteToHalt() {
+        this.shard.halted[this.local] = true;
+    }
+
+    /**
+     * Adds the value to the global sum of this superstep, which the master and, in the next superstep, every vertex
+     * can read
+     */
+    public void aggregate(double value) {
+        this.shard.aggregate += value;
+    }
+}
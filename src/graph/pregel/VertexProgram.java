@@ -0,0 +1,32 @@
+package graph.pregel;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Vertex-centric program, as in Pregel (Malewicz et al., 2010): in every superstep each active vertex reads the
+ * messages sent to it in the previous one, updates its value and sends messages of its own. A vertex stops being
+ * active when it votes to halt, and becomes active again when a message reaches it. The run ends when every vertex
+ * has halted and no message is in flight, or when masterCompute says so
+ * @param <V> Type of the value of every vertex; values start as null
+ * @param <M> Type of the messages, which must not be null
+ */
+
+public interface VertexProgram<V, M> {
+
+    void compute(Vertex<V, M> vertex, Messages<M> messages);
+
+    /**
+     * @return A combiner to merge the messages sent to the same vertex, or null if every message must be delivered
+     */
+    default Combiner<M> getCombiner() {
+        return null;
+    }
+
+    /**
+     * Called at every barrier, after every vertex has computed and every message was delivered, on a single thread.
+     * Changing the phase wakes every vertex up for the next superstep
+     * @return false to end the run right away
+     */
+    default boolean masterCompute(Master master) {
+        return true;
+    }
+}
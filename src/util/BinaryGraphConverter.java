@@ -0,0 +1,55 @@
+package util;
+
+import graph.CsrGraph;
+import graph.MappedCsrGraph;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Turns the text edge lists GraphLoader reads into the binary format MappedCsrGraph opens, so a graph is parsed once
+ * and every later run just maps the file
+ */
+
+public class BinaryGraphConverter {
+    private static final String[] DEFAULT_FILES = {"data/facebook_1000.txt", "data/facebook_2000.txt",
+            "data/twitter_higgs.txt"};
+
+    /**
+     * @param textFile Edge list, as read by GraphLoader
+     * @param binaryFile Path of the binary file, which is overwritten if it exists
+     * @return true if the binary file was written
+     */
+    public static boolean convert(String textFile, String binaryFile) {
+        CsrGraph snapshot = MappedGraphLoader.loadCsr(textFile);
+        return snapshot != null && MappedCsrGraph.write(snapshot, binaryFile);
+    }
+
+    /**
+     * @return The name convert's binary file gets by default: the text file's one with its extension changed to .csr
+     */
+    public static String binaryName(String textFile) {
+        int dot = textFile.lastIndexOf('.');
+        return (dot > textFile.lastIndexOf('/') ? textFile.substring(0, dot) : textFile) + ".csr";
+    }
+
+    /**
+     * Converts the files passed as arguments (or the ones in data/ if there are none), and times opening each of them
+     * against parsing it again
+     */
+    public static void main(String[] args) {
+        for (String textFile : args.length > 0 ? args : DEFAULT_FILES) {
+            String binaryFile = binaryName(textFile);
+            if (!convert(textFile, binaryFile)) continue;
+
+            long start = System.nanoTime();
+            MappedCsrGraph mapped = MappedCsrGraph.open(binaryFile);
+            long opened = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            MappedGraphLoader.loadCsr(textFile);
+            long parsed = System.nanoTime() - start;
+
+            System.out.println(String.format("%s -> %s: %d nodes, %d edges; opened in %.3f ms, parsed in %.3f ms",
+                    textFile, binaryFile, mapped.getSize(), mapped.getEdgeAmount(), opened / 1e6, parsed / 1e6));
+        }
+    }
+}
@@ -4,10 +4,11 @@
  */
 package util;
 
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
 import java.io.File;
-import java.util.HashSet;
 import java.util.Scanner;
-import java.util.Set;
 
 public class GraphLoader {
     /**
@@ -16,7 +17,9 @@ public class GraphLoader {
      * to a "from" vertex and a "to" vertex.
      */ 
     public static void loadGraph(graph.Graph g, String filename) {
-        Set<Integer> seen = new HashSet<>();
+        GraphMetrics metrics = Metrics.current();
+        long start = metrics == null ? 0L : System.nanoTime();
+        long lines = 0;
         Scanner sc;
         try {
             sc = new Scanner(new File(filename));
@@ -26,20 +29,17 @@ public class GraphLoader {
         }
         // Iterate over the lines in the file, adding new
         // vertices as they are found and connecting them with edges.
+        // addVertex already ignores the vertices the graph has, so no set of seen vertices is kept on the side
         while (sc.hasNextInt()) {
             int v1 = sc.nextInt();
             int v2 = sc.nextInt();
-            if (!seen.contains(v1)) {
-                g.addVertex(v1);
-                seen.add(v1);
-            }
-            if (!seen.contains(v2)) {
-                g.addVertex(v2);
-                seen.add(v2);
-            }
+            g.addVertex(v1);
+            g.addVertex(v2);
             g.addEdge(v1, v2);
+            lines++;
         }
         
         sc.close();
+        if (metrics != null) metrics.graphLoaded(filename, lines, System.nanoTime() - start);
     }
 }
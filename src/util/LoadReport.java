@@ -0,0 +1,40 @@
+package util;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * What a load took: lines (edges) parsed, bytes read and time spent
+ */
+
+public class LoadReport {
+    private final long lines;
+    private final long bytes;
+    private final long nanos;
+
+    LoadReport(long lines, long bytes, long nanos) {
+        this.lines = lines;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public long getLines() {
+        return this.lines;
+    }
+
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    public double getLinesPerSecond() {
+        return this.nanos == 0 ? 0.0 : this.lines * 1e9 / this.nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d lines (%d bytes) in %.3f seconds, %.0f lines/sec", this.lines, this.bytes,
+                this.nanos / 1e9, getLinesPerSecond());
+    }
+}
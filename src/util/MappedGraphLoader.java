@@ -0,0 +1,204 @@
+package util;
+
+import graph.CsrGraph;
+import graph.Graph;
+import graph.OffHeapCsrGraph;
+import graph.metrics.GraphMetrics;
+import graph.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * @author Roy Gabriel Crivolotti
+ * Faster alternative to GraphLoader for the same files (lines with two integers each, "from" and "to"). The file is
+ * memory-mapped through a FileChannel and the integers are parsed straight from the bytes, without Scanner's regular
+ * expressions and without creating a single String. Edges are parsed in batches into two int arrays and then inserted
+ * into the graph together, relying on addVertex to skip the vertices it already has instead of keeping a set of them
+ */
+
+public class MappedGraphLoader {
+    private static final int BATCH_SIZE = 1 << 16;
+    // Files are mapped in windows of this size, since a single mapping can't go past 2 GB
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Loads graph with data from a file
+     * @return How many lines were loaded and how fast, or null if the file couldn't be read
+     */
+    public static LoadReport loadGraph(Graph g, String filename) {
+        return parse(filename, (from, to, count) -> {
+            for (int i = 0; i < count; i++) {
+                g.addVertex(from[i]);
+                g.addVertex(to[i]);
+                g.addEdge(from[i], to[i]);
+            }
+        });
+    }
+
+    /**
+     * Loads the file straight into an immutable snapshot, which never holds node objects nor hash sets at all
+     * @return The snapshot, or null if the file couldn't be read
+     */
+    public static CsrGraph loadCsr(String filename) {
+        EdgeList edges = new EdgeList();
+        return parse(filename, edges::add) == null ? null : CsrGraph.fromEdges(edges.from, edges.to, edges.count);
+    }
+
+    /**
+     * Loads the file into a snapshot kept entirely off the heap, for graphs too big for it; the edges go straight
+     * from the parser to the builder's direct buffers
+     * @return The snapshot, or null if the file couldn't be read
+     */
+    public static OffHeapCsrGraph loadOffHeap(String filename) {
+        OffHeapCsrGraph.Builder builder = new OffHeapCsrGraph.Builder();
+        return parse(filename, builder::addEdges) == null ? null : builder.build();
+    }
+
+    /**
+     * Parses the whole file, handing every batch of edges to the consumer
+     * @return How many lines were parsed and how fast, or null if the file couldn't be read
+     */
+    static LoadReport parse(String filename, EdgeConsumer consumer) {
+        long start = System.nanoTime();
+        Parser parser = new Parser(consumer);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+                parser.parse(window, position);
+            }
+            parser.finish();
+            LoadReport report = new LoadReport(parser.lines, size, System.nanoTime() - start);
+            GraphMetrics metrics = Metrics.current();
+            if (metrics != null) metrics.graphLoaded(filename, report.getLines(), report.getNanos());
+            return report;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads a file with both loaders and prints how each of them did
+     */
+    public static void main(String[] args) {
+        String filename = args.length > 0 ? args[0] : "data/twitter_higgs.txt";
+
+        long start = System.nanoTime();
+        GraphLoader.loadGraph(new graph.CapGraph(), filename);
+        System.out.println("GraphLoader:       " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " seconds");
+        System.out.println("MappedGraphLoader: " + loadGraph(new graph.CapGraph(), filename));
+        System.out.println("Parsing alone:     " + parse(filename, (from, to, count) -> { }));
+
+        start = System.nanoTime();
+        loadCsr(filename);
+        System.out.println("Into a CsrGraph:   " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " seconds");
+
+        start = System.nanoTime();
+        loadOffHeap(filename);
+        System.out.println("Off the heap:      " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " seconds");
+    }
+
+    /**
+     * Receives the edges parsed, a batch at a time; the arrays are reused for the next batch
+     */
+    interface EdgeConsumer {
+        void accept(int[] from, int[] to, int count);
+    }
+
+    /**
+     * State machine over the bytes, so a number split between two mapped windows is still parsed as one
+     */
+    private static final class Parser {
+        private final EdgeConsumer consumer;
+        private final int[] from = new int[BATCH_SIZE];
+        private final int[] to = new int[BATCH_SIZE];
+        private int count;
+        private long lines;
+
+        private boolean inNumber;
+        private boolean negative;
+        private long value;
+        private boolean haveFrom;
+        private int pendingFrom;
+
+        private Parser(EdgeConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void parse(MappedByteBuffer window, long windowStart) {
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = window.get(i);
+                if (b >= '0' && b <= '9') {
+                    this.value = this.value * 10 + (b - '0');
+                    if (this.value > 1L + Integer.MAX_VALUE) throw new NumberFormatException("Integer too large at byte " + (windowStart + i));
+                    this.inNumber = true;
+                }
+                else if (b == ' ' || b == '\n' || b == '\r' || b == '\t') endNumber();
+                else if (b == '-' && !this.inNumber && !this.negative) this.negative = true;
+                else throw new NumberFormatException("Unexpected character '" + (char) b + "' at byte " + (windowStart + i));
+            }
+        }
+
+        void finish() {
+            endNumber();
+            if (this.haveFrom) throw new NumberFormatException("An odd number of integers, " + this.pendingFrom + " has no target");
+            flush();
+        }
+
+        private void endNumber() {
+            if (!this.inNumber) {
+                if (this.negative) throw new NumberFormatException("A minus sign with no number after it");
+                return;
+            }
+            long signed = this.negative ? -this.value : this.value;
+            if (signed > Integer.MAX_VALUE) throw new NumberFormatException("Integer too large: " + signed);
+            this.inNumber = false;
+            this.negative = false;
+            this.value = 0;
+
+            if (!this.haveFrom) {
+                this.pendingFrom = (int) signed;
+                this.haveFrom = true;
+                return;
+            }
+            this.from[this.count] = this.pendingFrom;
+            this.to[this.count++] = (int) signed;
+            this.haveFrom = false;
+            this.lines++;
+            if (this.count == BATCH_SIZE) flush();
+        }
+
+        private void flush() {
+            if (this.count > 0) this.consumer.accept(this.from, this.to, this.count);
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Every batch appended into two growing arrays, for loadCsr
+     */
+    private static final class EdgeList {
+        private int[] from = new int[BATCH_SIZE];
+        private int[] to = new int[BATCH_SIZE];
+        private int count;
+
+        void add(int[] batchFrom, int[] batchTo, int batchCount) {
+            if (this.count + batchCount > this.from.length) {
+                int capacity = Math.max(this.from.length * 2, this.count + batchCount);
+                this.from = Arrays.copyOf(this.from, capacity);
+                this.to = Arrays.copyOf(this.to, capacity);
+            }
+            System.arraycopy(batchFrom, 0, this.from, this.count, batchCount);
+            System.arraycopy(batchTo, 0, this.to, this.count, batchCount);
+            this.count += batchCount;
+        }
+    }
+}